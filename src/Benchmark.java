@@ -0,0 +1,445 @@
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Measures the speed of parts of the search engine from the command line. The
+ * flag -bench picks what is measured:
+ *
+ * <pre>
+ * -bench queries -path dir -query file [-threads n] [-rounds n] [-exact]
+ * -bench queue [-tasks n] [-threads n] [-rounds n]
+ * -bench html -path dir [-rounds n]
+ * -bench tokens -path dir [-rounds n]
+ * </pre>
+ *
+ * The queries benchmark builds a ThreadSafeInvertedIndex from the text files
+ * in -path, then searches it for every line of -query from 1 to -threads
+ * threads at once, without a QueryCache, and prints the searches per second
+ * for each number of threads. Every run is repeated -rounds times after one
+ * untimed run, and the best time is printed.
+ *
+ * The queue benchmark runs -tasks tiny tasks on a WorkQueue with its shared
+ * queue and on one with a ForkJoinPool, and prints the tasks per second of
+ * each. The tasks are first all made by the main thread, like the files of
+ * the index builders, and then made by the tasks themselves, like the links
+ * of the web crawler.
+ *
+ * The html benchmark cleans the .html and .htm files in -path with the
+ * HtmlScanner of HtmlCleaner and with the regular expression passes it used to
+ * run one after the other, and prints the characters per second of each. It
+ * also prints how many pages did not give the same text and links both ways.
+ *
+ * The tokens benchmark splits the lines of the text files in -path into words
+ * with the TextTokenizer and with the regular expressions of TextParser, and
+ * prints the lines per second of each, after as many untimed runs as timed
+ * ones. It also prints how many lines did not give the same words both ways.
+ *
+ * @author Porfirio Mohabir
+ *
+ */
+public class Benchmark {
+
+	/**
+	 * Maximum number of results of each search
+	 */
+	private static final int LIMIT = 50;
+
+	/**
+	 * Runs the benchmark named by -bench
+	 *
+	 * @param args flag/value pairs of the benchmark
+	 * @throws IOException          if the input files cannot be read
+	 * @throws InterruptedException if interrupted while waiting for a thread
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		ArgumentMap map = new ArgumentMap(args);
+		int threads = getInt(map, "-threads", 4);
+		int rounds = getInt(map, "-rounds", 5);
+
+		switch (map.getString("-bench", "queries")) {
+		case "queries":
+			queries(map.getPath(map.getString("-path")), map.getPath(map.getString("-query")), map.hasFlag("-exact"),
+					threads, rounds);
+			break;
+		case "queue":
+			queue(getInt(map, "-tasks", 1_000_000), threads, rounds);
+			break;
+		case "html":
+			html(map.getPath(map.getString("-path")), rounds);
+			break;
+		case "tokens":
+			tokens(map.getPath(map.getString("-path")), rounds);
+			break;
+		default:
+			System.out.println("Unknown benchmark: " + map.getString("-bench"));
+		}
+	}
+
+	/**
+	 * Prints the searches per second for the lines of @param query in the index
+	 * of @param path from 1 to @param threads threads at once
+	 *
+	 * @param path    - directory or text file to index
+	 * @param query   - file with one search per line
+	 * @param exact   - True for exact searches
+	 * @param threads - maximum number of threads
+	 * @param rounds  - number of timed runs for each number of threads
+	 * @throws IOException          if the files cannot be read
+	 * @throws InterruptedException if interrupted while waiting for a thread
+	 */
+	private static void queries(Path path, Path query, boolean exact, int threads, int rounds)
+			throws IOException, InterruptedException {
+		if (path == null || query == null) {
+			System.out.println("The queries benchmark needs -path and -query");
+			return;
+		}
+
+		ThreadSafeInvertedIndex index = new ThreadSafeInvertedIndex();
+		new InvertedIndexBuilder(index).addToInvertIndex(path);
+
+		List<TreeSet<String>> searches = new ArrayList<>();
+		StemCache stemmer = StemCache.get();
+		for (String line : Files.readAllLines(query, StandardCharsets.UTF_8)) {
+			TreeSet<String> words = new TreeSet<>();
+			TextTokenizer.get().tokenize(line, (chars, length) -> words.add(stemmer.stem(chars, length)));
+			if (!words.isEmpty()) {
+				searches.add(words);
+			}
+		}
+
+		System.out.printf("%d words, %d searches%n", index.wordCount(), searches.size());
+		runSearches(index, searches, exact, threads);
+
+		for (int count = 1; count <= threads; count++) {
+			long best = Long.MAX_VALUE;
+			for (int round = 0; round < rounds; round++) {
+				best = Math.min(best, runSearches(index, searches, exact, count));
+			}
+			double perSecond = (double) count * searches.size() * 1_000_000_000L / Math.max(best, 1);
+			System.out.printf("%2d threads: %,12.0f searches/s%n", count, perSecond);
+		}
+	}
+
+	/**
+	 * Returns the nanoseconds @param threads threads take to each search @param
+	 * index for all of @param searches
+	 *
+	 * @param index    - index to search
+	 * @param searches - stems of each search
+	 * @param exact    - True for exact searches
+	 * @param threads  - number of threads
+	 * @return - elapsed time in nanoseconds
+	 * @throws InterruptedException if interrupted while waiting for a thread
+	 */
+	private static long runSearches(InvertedIndexInterface index, List<TreeSet<String>> searches, boolean exact,
+			int threads) throws InterruptedException {
+		Thread[] workers = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Thread(() -> {
+				for (TreeSet<String> search : searches) {
+					index.search(search, exact, LIMIT);
+				}
+			});
+		}
+
+		long start = System.nanoTime();
+		for (Thread worker : workers) {
+			worker.start();
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * Prints the tasks per second of a WorkQueue with @param threads threads,
+	 * with its shared queue and with a ForkJoinPool
+	 *
+	 * @param tasks   - number of tasks of each run
+	 * @param threads - number of worker threads
+	 * @param rounds  - number of timed runs of each kind
+	 * @throws InterruptedException if interrupted while waiting for the tasks
+	 */
+	private static void queue(int tasks, int threads, int rounds) throws InterruptedException {
+		for (boolean nested : new boolean[] { false, true }) {
+			for (boolean forkJoin : new boolean[] { false, true }) {
+				WorkQueue queue = new WorkQueue(threads, forkJoin);
+				try {
+					runTasks(queue, tasks, nested);
+
+					long best = Long.MAX_VALUE;
+					for (int round = 0; round < rounds; round++) {
+						best = Math.min(best, runTasks(queue, tasks, nested));
+					}
+					System.out.printf("%-6s %-9s %,12.0f tasks/s%n", nested ? "nested" : "flat",
+							forkJoin ? "forkjoin" : "queue", (double) tasks * 1_000_000_000L / Math.max(best, 1));
+				} finally {
+					queue.shutdown();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the nanoseconds @param queue takes to run @param tasks tiny tasks
+	 *
+	 * @param queue  - queue that runs the tasks
+	 * @param tasks  - number of tasks
+	 * @param nested - True if the tasks make each other, False if the calling
+	 *               thread makes all of them
+	 * @return - elapsed time in nanoseconds
+	 * @throws InterruptedException if interrupted while waiting for the tasks
+	 */
+	private static long runTasks(WorkQueue queue, int tasks, boolean nested) throws InterruptedException {
+		LongAdder sum = new LongAdder();
+
+		long start = System.nanoTime();
+		if (nested) {
+			queue.execute(new SplitTask(queue, sum, 0, tasks));
+		} else {
+			for (int i = 0; i < tasks; i++) {
+				int value = i;
+				queue.execute(() -> sum.add(Integer.bitCount(value)));
+			}
+		}
+		queue.finish();
+		long elapsed = System.nanoTime() - start;
+
+		if (sum.sum() <= 0 && tasks > 1) {
+			System.out.println("No task was run");
+		}
+		return elapsed;
+	}
+
+	/**
+	 * Task that stands for the values from start to end, and splits them into
+	 * two new tasks until only one is left
+	 */
+	private static class SplitTask implements Runnable {
+
+		/**
+		 * Queue that runs the new tasks
+		 */
+		private final WorkQueue queue;
+
+		/**
+		 * Sum of the bits of the values
+		 */
+		private final LongAdder sum;
+
+		/**
+		 * First value of the task
+		 */
+		private final int start;
+
+		/**
+		 * End of the values of the task
+		 */
+		private final int end;
+
+		/**
+		 * Creates a task for the values from @param start to @param end
+		 *
+		 * @param queue - queue that runs the new tasks
+		 * @param sum   - sum of the bits of the values
+		 * @param start - first value of the task
+		 * @param end   - end of the values of the task
+		 */
+		private SplitTask(WorkQueue queue, LongAdder sum, int start, int end) {
+			this.queue = queue;
+			this.sum = sum;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		public void run() {
+			sum.add(Integer.bitCount(start));
+
+			// this task stands for the first value, the rest is split in two
+			int middle = (start + 1 + end) >>> 1;
+			if (start + 1 < middle) {
+				queue.execute(new SplitTask(queue, sum, start + 1, middle));
+			}
+			if (middle < end) {
+				queue.execute(new SplitTask(queue, sum, middle, end));
+			}
+		}
+	}
+
+	/**
+	 * Prints the characters per second of HtmlCleaner and of the regular
+	 * expression passes for the HTML files in @param path
+	 *
+	 * @param path   - directory or HTML file
+	 * @param rounds - number of timed runs of each kind
+	 * @throws IOException if the files cannot be read
+	 */
+	private static void html(Path path, int rounds) throws IOException {
+		if (path == null) {
+			System.out.println("The html benchmark needs -path");
+			return;
+		}
+
+		List<Path> files;
+		try (Stream<Path> paths = Files.walk(path)) {
+			files = paths.filter(file -> {
+				String name = file.getFileName().toString().toLowerCase();
+				return Files.isRegularFile(file) && (name.endsWith(".html") || name.endsWith(".htm"));
+			}).collect(Collectors.toList());
+		}
+
+		List<URL> bases = new ArrayList<>();
+		List<String> pages = new ArrayList<>();
+		long characters = 0;
+		for (Path file : files) {
+			bases.add(file.toUri().toURL());
+			pages.add(Files.readString(file, StandardCharsets.UTF_8));
+			characters += pages.get(pages.size() - 1).length();
+		}
+
+		int different = 0;
+		for (int i = 0; i < pages.size(); i++) {
+			List<URL> links = new ArrayList<>();
+			String text = regexClean(bases.get(i), pages.get(i), links);
+			HtmlCleaner cleaner = new HtmlCleaner(bases.get(i), pages.get(i));
+			if (!text.equals(cleaner.text) || !links.toString().equals(cleaner.urls.toString())) {
+				different++;
+			}
+		}
+		System.out.printf("%d pages, %d characters, %d different%n", pages.size(), characters, different);
+
+		long regex = Long.MAX_VALUE;
+		long scanner = Long.MAX_VALUE;
+		for (int round = 0; round <= rounds; round++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < pages.size(); i++) {
+				regexClean(bases.get(i), pages.get(i), new ArrayList<>());
+			}
+			long middle = System.nanoTime();
+			for (int i = 0; i < pages.size(); i++) {
+				new HtmlCleaner(bases.get(i), pages.get(i));
+			}
+			long end = System.nanoTime();
+
+			// the first round is not timed
+			if (round > 0) {
+				regex = Math.min(regex, middle - start);
+				scanner = Math.min(scanner, end - middle);
+			}
+		}
+
+		System.out.printf("regex   %,14.0f characters/s%n", characters * 1_000_000_000.0 / Math.max(regex, 1));
+		System.out.printf("scanner %,14.0f characters/s%n", characters * 1_000_000_000.0 / Math.max(scanner, 1));
+	}
+
+	/**
+	 * Returns the text of @param html, cleaned by the regular expression passes
+	 * HtmlCleaner used to run, and adds its links to @param links
+	 *
+	 * @param base  - URL of the page
+	 * @param html  - HTML of the page
+	 * @param links - receives the links of the page
+	 * @return - text of the page
+	 */
+	private static String regexClean(URL base, String html, List<URL> links) {
+		html = HtmlCleaner.stripComments(html);
+
+		html = HtmlCleaner.stripElement(html, "head");
+		html = HtmlCleaner.stripElement(html, "style");
+		html = HtmlCleaner.stripElement(html, "script");
+		html = HtmlCleaner.stripElement(html, "noscript");
+		html = HtmlCleaner.stripElement(html, "svg");
+
+		links.addAll(HtmlCleaner.listLinks(base, html));
+
+		html = HtmlCleaner.stripTags(html);
+		return HtmlCleaner.stripEntities(html);
+	}
+
+	/**
+	 * Prints the lines per second of TextTokenizer and of the regular expressions
+	 * of TextParser for the text files in @param path
+	 *
+	 * @param path   - directory or text file
+	 * @param rounds - number of timed runs of each kind
+	 * @throws IOException if the files cannot be read
+	 */
+	private static void tokens(Path path, int rounds) throws IOException {
+		if (path == null) {
+			System.out.println("The tokens benchmark needs -path");
+			return;
+		}
+
+		List<String> lines = new ArrayList<>();
+		for (Path file : InvertedIndexBuilder.fileFinder(path)) {
+			lines.addAll(Files.readAllLines(file, StandardCharsets.UTF_8));
+		}
+
+		TextTokenizer tokenizer = TextTokenizer.get();
+		int different = 0;
+		for (String line : lines) {
+			if (!Arrays.equals(TextParser.split(TextParser.clean(line)), tokenizer.parse(line))) {
+				different++;
+			}
+		}
+		System.out.printf("%d lines, %d different%n", lines.size(), different);
+
+		long[] words = new long[1];
+		long regex = Long.MAX_VALUE;
+		long scanner = Long.MAX_VALUE;
+		for (int round = 0; round < 2 * rounds; round++) {
+			long start = System.nanoTime();
+			for (String line : lines) {
+				words[0] += TextParser.split(TextParser.clean(line)).length;
+			}
+			long middle = System.nanoTime();
+			for (String line : lines) {
+				tokenizer.tokenize(line, (chars, length) -> words[0]--);
+			}
+			long end = System.nanoTime();
+
+			// the first half of the rounds only warm up the compiler
+			if (round >= rounds) {
+				regex = Math.min(regex, middle - start);
+				scanner = Math.min(scanner, end - middle);
+			}
+		}
+
+		if (words[0] != 0) {
+			System.out.println("The word counts are different");
+		}
+		System.out.printf("regex     %,14.0f lines/s%n", lines.size() * 1_000_000_000.0 / Math.max(regex, 1));
+		System.out.printf("tokenizer %,14.0f lines/s%n", lines.size() * 1_000_000_000.0 / Math.max(scanner, 1));
+	}
+
+	/**
+	 * Returns the number @param flag is mapped to in @param map, or @param
+	 * defaultValue if it is missing or not a positive number
+	 *
+	 * @param map          - command-line arguments
+	 * @param flag         - flag of the number
+	 * @param defaultValue - value if the flag has no valid number
+	 * @return - the number
+	 */
+	private static int getInt(ArgumentMap map, String flag, int defaultValue) {
+		try {
+			int value = Integer.parseInt(map.getString(flag, String.valueOf(defaultValue)));
+			return value > 0 ? value : defaultValue;
+		} catch (NumberFormatException e) {
+			System.out.println("Value is invalid");
+			return defaultValue;
+		}
+	}
+}
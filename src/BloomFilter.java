@@ -0,0 +1,113 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe Bloom filter over 64-bit hashes. It remembers which hashes were
+ * added in a fixed number of bits, no matter how many hashes there are, at the
+ * cost of sometimes claiming a hash was added when it was not. The bits are set
+ * with compare-and-set, so adding never blocks.
+ *
+ * @author Porfirio Mohabir
+ *
+ */
+public class BloomFilter {
+
+	/**
+	 * Default rate of false positives once the expected number of hashes was
+	 * added
+	 */
+	public static final double DEFAULT_ERROR = 0.001;
+
+	/**
+	 * Bits of the filter
+	 */
+	private final AtomicLongArray bits;
+
+	/**
+	 * Number of bits
+	 */
+	private final long size;
+
+	/**
+	 * Number of bits set for every hash
+	 */
+	private final int probes;
+
+	/**
+	 * Creates a filter for @param expected hashes with the default rate of false
+	 * positives
+	 *
+	 * @param expected - expected number of hashes
+	 */
+	public BloomFilter(long expected) {
+		this(expected, DEFAULT_ERROR);
+	}
+
+	/**
+	 * Creates a filter for @param expected hashes that gives a false positive for
+	 * about a @param error fraction of new hashes once they were all added
+	 *
+	 * @param expected - expected number of hashes
+	 * @param error    - rate of false positives, between 0 and 1
+	 */
+	public BloomFilter(long expected, double error) {
+		expected = Math.max(expected, 1);
+		error = Math.min(Math.max(error, Double.MIN_NORMAL), 0.5);
+
+		long words = (long) Math.ceil(-expected * Math.log(error) / (Math.log(2) * Math.log(2)) / Long.SIZE);
+		words = Math.min(Math.max(words, 1), Integer.MAX_VALUE);
+
+		this.bits = new AtomicLongArray((int) words);
+		this.size = words * Long.SIZE;
+		this.probes = (int) Math.max(1, Math.round((double) size / expected * Math.log(2)));
+	}
+
+	/**
+	 * Adds @param hash to the filter
+	 *
+	 * @param hash - 64-bit hash
+	 * @return - True if the hash was not in the filter before, or False if it was
+	 *         or is a false positive. If two threads add the same hash at the
+	 *         same time, both may see True.
+	 */
+	public boolean add(long hash) {
+		boolean added = false;
+		long first = hash;
+		long second = Long.rotateLeft(hash * 0x9E3779B97F4A7C15L, 32) | 1;
+
+		for (int i = 0; i < probes; i++) {
+			long bit = Math.floorMod(first + i * second, size);
+			int word = (int) (bit >>> 6);
+			long mask = 1L << bit;
+
+			long value;
+			while (((value = bits.get(word)) & mask) == 0) {
+				if (bits.compareAndSet(word, value, value | mask)) {
+					added = true;
+					break;
+				}
+			}
+		}
+
+		return added;
+	}
+
+	/**
+	 * Returns True if @param hash might have been added
+	 *
+	 * @param hash - 64-bit hash
+	 * @return - False if the hash was certainly not added
+	 */
+	public boolean mightContain(long hash) {
+		long first = hash;
+		long second = Long.rotateLeft(hash * 0x9E3779B97F4A7C15L, 32) | 1;
+
+		for (int i = 0; i < probes; i++) {
+			long bit = Math.floorMod(first + i * second, size);
+			if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+}
@@ -0,0 +1,153 @@
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Counts the failed requests to each host, and stops sending requests to a host
+ * after too many failed in a row, so workers are not kept busy by hosts that
+ * are down or too slow. Once a cooldown has passed, a single request is let
+ * through as a trial. The breaker of the host is closed again if the trial
+ * succeeds, and stays open for another cooldown if it fails.
+ *
+ * @author Porfirio Mohabir
+ *
+ */
+public class CircuitBreaker {
+
+	/**
+	 * Default number of failures in a row that open the breaker of a host
+	 */
+	public static final int DEFAULT_FAILURES = 5;
+
+	/**
+	 * Default time the breaker of a host stays open, in milliseconds
+	 */
+	public static final long DEFAULT_COOLDOWN = 30_000;
+
+	/**
+	 * State of every host that had a failure since its last success
+	 */
+	private final ConcurrentHashMap<String, State> hosts;
+
+	/**
+	 * Number of failures in a row that open the breaker of a host
+	 */
+	private final int failures;
+
+	/**
+	 * Time the breaker of a host stays open, in milliseconds
+	 */
+	private final long cooldown;
+
+	/**
+	 * Creates a CircuitBreaker with the default number of failures and cooldown
+	 */
+	public CircuitBreaker() {
+		this(DEFAULT_FAILURES, DEFAULT_COOLDOWN);
+	}
+
+	/**
+	 * Creates a CircuitBreaker that opens after @param failures failures in a row
+	 * and stays open for @param cooldown milliseconds
+	 *
+	 * @param failures - number of failures in a row that open the breaker
+	 * @param cooldown - time the breaker stays open, in milliseconds
+	 */
+	public CircuitBreaker(int failures, long cooldown) {
+		this.hosts = new ConcurrentHashMap<>();
+		this.failures = Math.max(failures, 1);
+		this.cooldown = cooldown;
+	}
+
+	/**
+	 * Returns True if a request may be sent to @param host. If the cooldown of an
+	 * open breaker has passed, only one caller is allowed until it reports its
+	 * result.
+	 *
+	 * @param host - host of the request
+	 * @return - True if the request may be sent
+	 */
+	public boolean allow(String host) {
+		State state = hosts.get(host);
+		if (state == null) {
+			return true;
+		}
+
+		synchronized (state) {
+			if (state.failures < failures) {
+				return true;
+			}
+
+			if (state.trial || System.currentTimeMillis() < state.openUntil) {
+				return false;
+			}
+
+			state.trial = true;
+			return true;
+		}
+	}
+
+	/**
+	 * Records that a request to @param host succeeded, and closes its breaker
+	 *
+	 * @param host - host of the request
+	 */
+	public void success(String host) {
+		hosts.remove(host);
+	}
+
+	/**
+	 * Records that a request to @param host failed, and opens its breaker if
+	 * there were too many failures in a row
+	 *
+	 * @param host - host of the request
+	 */
+	public void failure(String host) {
+		State state = hosts.computeIfAbsent(host, key -> new State());
+
+		synchronized (state) {
+			state.failures++;
+			state.trial = false;
+
+			if (state.failures >= failures) {
+				state.openUntil = System.currentTimeMillis() + cooldown;
+			}
+		}
+	}
+
+	/**
+	 * Returns True if requests to @param host are currently refused
+	 *
+	 * @param host - host of the request
+	 * @return - True if the breaker of the host is open
+	 */
+	public boolean isOpen(String host) {
+		State state = hosts.get(host);
+		if (state == null) {
+			return false;
+		}
+
+		synchronized (state) {
+			return state.failures >= failures;
+		}
+	}
+
+	/**
+	 * Failures of one host
+	 */
+	private static class State {
+
+		/**
+		 * Number of failures in a row
+		 */
+		private int failures;
+
+		/**
+		 * Time the breaker may let a trial request through
+		 */
+		private long openUntil;
+
+		/**
+		 * True while a trial request is running
+		 */
+		private boolean trial;
+	}
+}
@@ -0,0 +1,265 @@
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * A pool of persistent HTTP/1.1 connections, kept separately for every
+ * protocol, host and port. A connection is returned to the pool after a
+ * response was read completely, and the next request to the same host reuses
+ * it instead of opening a new socket and repeating the TLS handshake.
+ * Connections that were idle for longer than the idle timeout are closed, and
+ * at most a fixed number of idle connections are kept for each host.
+ *
+ * @author Porfirio Mohabir
+ *
+ */
+public class ConnectionPool {
+
+	/**
+	 * Default time a connection may be idle before it is closed, in milliseconds
+	 */
+	public static final long DEFAULT_IDLE_TIMEOUT = 30_000;
+
+	/**
+	 * Default maximum number of idle connections for each host
+	 */
+	public static final int DEFAULT_MAX_IDLE = 8;
+
+	/**
+	 * Idle connections of each host, the most recently used last
+	 */
+	private final HashMap<String, ArrayDeque<Connection>> idle;
+
+	/**
+	 * Time a connection may be idle before it is closed, in milliseconds
+	 */
+	private final long idleTimeout;
+
+	/**
+	 * Maximum number of idle connections for each host
+	 */
+	private final int maxIdle;
+
+	/**
+	 * Creates a ConnectionPool with the default idle timeout and size
+	 */
+	public ConnectionPool() {
+		this(DEFAULT_IDLE_TIMEOUT, DEFAULT_MAX_IDLE);
+	}
+
+	/**
+	 * Creates a ConnectionPool that closes connections idle for @param
+	 * idleTimeout milliseconds and keeps at most @param maxIdle idle connections
+	 * for each host
+	 *
+	 * @param idleTimeout - time a connection may be idle, in milliseconds
+	 * @param maxIdle     - maximum number of idle connections for each host
+	 */
+	public ConnectionPool(long idleTimeout, int maxIdle) {
+		this.idle = new HashMap<>();
+		this.idleTimeout = idleTimeout;
+		this.maxIdle = maxIdle;
+	}
+
+	/**
+	 * Returns the key of the host of @param url
+	 *
+	 * @param url - URL to connect to
+	 * @return - protocol, host and port of the URL
+	 */
+	static String getKey(URL url) {
+		int port = url.getPort() < 0 ? url.getDefaultPort() : url.getPort();
+		return url.getProtocol().toLowerCase() + "://" + url.getHost().toLowerCase() + ":" + port;
+	}
+
+	/**
+	 * Returns an idle connection to the host of @param url, or opens a new one
+	 * if there is none
+	 *
+	 * @param url - URL to connect to
+	 * @return - open Connection
+	 * @throws IOException if unable to open a connection
+	 */
+	public Connection acquire(URL url) throws IOException {
+		String key = getKey(url);
+		long now = System.currentTimeMillis();
+
+		synchronized (idle) {
+			ArrayDeque<Connection> connections = idle.get(key);
+
+			while (connections != null && !connections.isEmpty()) {
+				Connection connection = connections.pollLast();
+
+				if (now - connection.lastUsed <= idleTimeout && !connection.socket.isClosed()) {
+					connection.reused = true;
+					return connection;
+				}
+				connection.close();
+			}
+		}
+
+		return open(url);
+	}
+
+	/**
+	 * Opens a new connection to the host of @param url
+	 *
+	 * @param url - URL to connect to
+	 * @return - open Connection
+	 * @throws IOException if unable to open a connection
+	 */
+	public Connection open(URL url) throws IOException {
+		return new Connection(getKey(url), HttpsFetcher.openConnection(url));
+	}
+
+	/**
+	 * Returns @param connection to the pool, so the next request to the same host
+	 * may reuse it. The response must have been read completely.
+	 *
+	 * @param connection - Connection to keep
+	 */
+	public void release(Connection connection) {
+		long now = System.currentTimeMillis();
+		connection.lastUsed = now;
+
+		synchronized (idle) {
+			ArrayDeque<Connection> connections = idle.computeIfAbsent(connection.key, key -> new ArrayDeque<>());
+
+			Iterator<Connection> iterator = connections.iterator();
+			while (iterator.hasNext()) {
+				Connection other = iterator.next();
+				if (now - other.lastUsed > idleTimeout || connections.size() >= maxIdle) {
+					iterator.remove();
+					other.close();
+				}
+			}
+
+			connections.addLast(connection);
+		}
+	}
+
+	/**
+	 * Closes every idle connection
+	 */
+	public void clear() {
+		synchronized (idle) {
+			for (ArrayDeque<Connection> connections : idle.values()) {
+				for (Connection connection : connections) {
+					connection.close();
+				}
+			}
+			idle.clear();
+		}
+	}
+
+	/**
+	 * Returns the number of idle connections
+	 *
+	 * @return - number of idle connections
+	 */
+	public int size() {
+		int size = 0;
+		synchronized (idle) {
+			for (ArrayDeque<Connection> connections : idle.values()) {
+				size += connections.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Socket with its buffered streams, that can be used for several requests
+	 */
+	public static class Connection {
+
+		/**
+		 * Protocol, host and port of the connection
+		 */
+		private final String key;
+
+		/**
+		 * Socket
+		 */
+		private final Socket socket;
+
+		/**
+		 * Buffered input of the socket
+		 */
+		private final InputStream input;
+
+		/**
+		 * Output of the socket
+		 */
+		private final OutputStream output;
+
+		/**
+		 * Time the connection was last returned to the pool
+		 */
+		private long lastUsed;
+
+		/**
+		 * True if the connection was taken from the pool
+		 */
+		private boolean reused;
+
+		/**
+		 * Creates a Connection of @param socket
+		 *
+		 * @param key    - protocol, host and port of the connection
+		 * @param socket - open Socket
+		 * @throws IOException if unable to get the streams of the socket
+		 */
+		private Connection(String key, Socket socket) throws IOException {
+			this.key = key;
+			this.socket = socket;
+			this.input = new BufferedInputStream(socket.getInputStream());
+			this.output = socket.getOutputStream();
+			this.lastUsed = System.currentTimeMillis();
+			this.reused = false;
+		}
+
+		/**
+		 * Returns the buffered input of the socket
+		 *
+		 * @return - InputStream
+		 */
+		public InputStream getInputStream() {
+			return input;
+		}
+
+		/**
+		 * Returns the output of the socket
+		 *
+		 * @return - OutputStream
+		 */
+		public OutputStream getOutputStream() {
+			return output;
+		}
+
+		/**
+		 * Returns True if the connection was already used for an earlier request
+		 *
+		 * @return - True if the connection was taken from the pool
+		 */
+		public boolean isReused() {
+			return reused;
+		}
+
+		/**
+		 * Closes the socket
+		 */
+		public void close() {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				System.out.println("Unable to close connection");
+			}
+		}
+	}
+}
@@ -0,0 +1,442 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Writes the state of a crawl to a directory from time to time, so a crawl that
+ * dies partway through can be resumed from its last checkpoint. The crawler
+ * only adds records to lock-free queues: one when the frontier accepts a URL,
+ * and one when a URL is done, with the postings of its page. A background
+ * thread drains the queues and appends them to the directory, so checkpoints
+ * never pause the crawl.
+ *
+ * A page is done only after the links it queued were accepted, and the done
+ * records are drained before the accepted records, so every checkpoint that
+ * contains a page also contains its links. URLs that were accepted but are not
+ * done, including pages that were being fetched, are queued again on resume.
+ *
+ * The directory contains:
+ *
+ * <pre>
+ * accepted.log:  every accepted URL, one per line, in the order accepted
+ * done.log:      every URL that is done, one per line
+ * segment-N.idx: the postings of the pages done between two checkpoints, in
+ *                the binary format of FrozenInvertedIndex.toBinary(Path)
+ * checkpoint:    the sizes of both logs and the number of segments, replaced
+ *                atomically after everything else is written
+ * </pre>
+ *
+ * Anything past the sizes in the checkpoint file was written by a checkpoint
+ * that did not finish, and is ignored and overwritten.
+ *
+ * @author Porfirio Mohabir
+ *
+ */
+public class CrawlCheckpoint {
+
+	/**
+	 * Default time between checkpoints, in milliseconds
+	 */
+	public static final long DEFAULT_INTERVAL = 30_000;
+
+	/**
+	 * Directory of the checkpoint
+	 */
+	private final Path directory;
+
+	/**
+	 * Time between checkpoints, in milliseconds
+	 */
+	private final long interval;
+
+	/**
+	 * URLs accepted since the last checkpoint
+	 */
+	private final ConcurrentLinkedQueue<URL> accepted;
+
+	/**
+	 * URLs done since the last checkpoint
+	 */
+	private final ConcurrentLinkedQueue<Done> done;
+
+	/**
+	 * Pages drained from the queue that are not in a checkpoint yet
+	 */
+	private final ArrayList<Done> pages;
+
+	/**
+	 * URLs drained from the queue that are not in a checkpoint yet
+	 */
+	private final ArrayList<URL> urls;
+
+	/**
+	 * Size of accepted.log in the last checkpoint
+	 */
+	private long acceptedSize;
+
+	/**
+	 * Size of done.log in the last checkpoint
+	 */
+	private long doneSize;
+
+	/**
+	 * Number of segments in the last checkpoint
+	 */
+	private int segments;
+
+	/**
+	 * Background thread that writes the checkpoints, or null
+	 */
+	private Writer writer;
+
+	/**
+	 * Creates a checkpoint in @param directory that is written every
+	 * {@link #DEFAULT_INTERVAL} milliseconds
+	 *
+	 * @param directory - directory of the checkpoint
+	 */
+	public CrawlCheckpoint(Path directory) {
+		this(directory, DEFAULT_INTERVAL);
+	}
+
+	/**
+	 * Creates a checkpoint in @param directory that is written every @param
+	 * interval milliseconds
+	 *
+	 * @param directory - directory of the checkpoint
+	 * @param interval  - time between checkpoints, in milliseconds
+	 */
+	public CrawlCheckpoint(Path directory, long interval) {
+		this.directory = directory;
+		this.interval = Math.max(interval, 1);
+		this.accepted = new ConcurrentLinkedQueue<>();
+		this.done = new ConcurrentLinkedQueue<>();
+		this.pages = new ArrayList<>();
+		this.urls = new ArrayList<>();
+		this.acceptedSize = 0;
+		this.doneSize = 0;
+		this.segments = 0;
+	}
+
+	/**
+	 * Records that the frontier accepted @param url
+	 *
+	 * @param url - cleaned URL
+	 */
+	public void accepted(URL url) {
+		accepted.add(url);
+	}
+
+	/**
+	 * Records that @param url is done. Must be called after the links of the
+	 * page were offered to the frontier.
+	 *
+	 * @param url  - cleaned URL
+	 * @param page - sealed postings of the page, or null if it could not be
+	 *             fetched
+	 */
+	public void done(URL url, InvertedIndex page) {
+		done.add(new Done(url, page));
+	}
+
+	/**
+	 * Rebuilds @param frontier and @param index from the last checkpoint in the
+	 * directory, if there is one
+	 *
+	 * @param frontier - empty frontier of the crawl
+	 * @param index    - index of the crawl
+	 * @return - number of URLs queued again, or -1 if there is no checkpoint
+	 * @throws IOException if the checkpoint cannot be read
+	 */
+	public int restore(CrawlFrontier frontier, WritableInvertedIndex index) throws IOException {
+		Path manifest = directory.resolve("checkpoint");
+		if (!Files.exists(manifest)) {
+			return -1;
+		}
+
+		List<String> lines = Files.readAllLines(manifest, StandardCharsets.UTF_8);
+		try {
+			acceptedSize = Long.parseLong(lines.get(0));
+			doneSize = Long.parseLong(lines.get(1));
+			segments = Integer.parseInt(lines.get(2));
+		} catch (IndexOutOfBoundsException | NumberFormatException e) {
+			throw new IOException("Invalid checkpoint: " + manifest, e);
+		}
+
+		truncate(directory.resolve("accepted.log"), acceptedSize);
+		truncate(directory.resolve("done.log"), doneSize);
+
+		HashSet<String> finished = new HashSet<>(readLines(directory.resolve("done.log")));
+		int queued = 0;
+		for (String line : readLines(directory.resolve("accepted.log"))) {
+			boolean pending = !finished.contains(line);
+			frontier.restore(new URL(line), pending);
+			if (pending) {
+				queued++;
+			}
+		}
+
+		for (int i = 0; i < segments; i++) {
+			InvertedIndex local = new InvertedIndex();
+			new MappedInvertedIndex(getSegment(i)).addTo(local);
+			local.seal();
+			index.addAll(local);
+		}
+
+		return queued;
+	}
+
+	/**
+	 * Starts writing checkpoints in the background
+	 *
+	 * @throws IOException if the directory cannot be created
+	 */
+	public synchronized void start() throws IOException {
+		Files.createDirectories(directory);
+		if (writer == null) {
+			writer = new Writer();
+			writer.start();
+		}
+	}
+
+	/**
+	 * Stops writing checkpoints in the background, and writes a last one with
+	 * everything recorded so far
+	 *
+	 * @throws IOException if the checkpoint cannot be written
+	 */
+	public void stop() throws IOException {
+		Writer stopped;
+		synchronized (this) {
+			stopped = writer;
+			writer = null;
+		}
+
+		if (stopped != null) {
+			stopped.shutdown();
+			try {
+				stopped.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		write();
+	}
+
+	/**
+	 * Appends everything recorded since the last checkpoint to the directory,
+	 * and then replaces the checkpoint file. If writing fails, the records are
+	 * kept for the next checkpoint.
+	 *
+	 * @throws IOException if the checkpoint cannot be written
+	 */
+	private synchronized void write() throws IOException {
+		// done first, so every page that is written also has its links written
+		Done next;
+		while ((next = done.poll()) != null) {
+			pages.add(next);
+		}
+
+		URL url;
+		while ((url = accepted.poll()) != null) {
+			urls.add(url);
+		}
+
+		if (pages.isEmpty() && urls.isEmpty()) {
+			return;
+		}
+
+		InvertedIndex batch = new InvertedIndex();
+		ArrayList<URL> finished = new ArrayList<>();
+		for (Done page : pages) {
+			finished.add(page.url);
+			if (page.postings != null) {
+				batch.addAll(page.postings);
+			}
+		}
+
+		long newAcceptedSize = append(directory.resolve("accepted.log"), acceptedSize, urls);
+		long newDoneSize = append(directory.resolve("done.log"), doneSize, finished);
+		int newSegments = segments;
+		if (batch.locationCount() > 0) {
+			batch.freeze().toBinary(getSegment(newSegments++));
+		}
+
+		Path temp = directory.resolve("checkpoint.tmp");
+		Files.write(temp, List.of(Long.toString(newAcceptedSize), Long.toString(newDoneSize),
+				Integer.toString(newSegments)), StandardCharsets.UTF_8);
+		Files.move(temp, directory.resolve("checkpoint"), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+
+		acceptedSize = newAcceptedSize;
+		doneSize = newDoneSize;
+		segments = newSegments;
+		pages.clear();
+		urls.clear();
+	}
+
+	/**
+	 * Returns the path of segment @param number
+	 *
+	 * @param number - number of the segment
+	 * @return - path of the segment file
+	 */
+	private Path getSegment(int number) {
+		return directory.resolve("segment-" + number + ".idx");
+	}
+
+	/**
+	 * Writes @param urls at @param size in the log at @param path, dropping
+	 * anything past that size
+	 *
+	 * @param path - path of the log
+	 * @param size - size of the log in the last checkpoint
+	 * @param urls - URLs to append
+	 * @return - new size of the log
+	 * @throws IOException if the log cannot be written
+	 */
+	private static long append(Path path, long size, List<URL> urls) throws IOException {
+		truncate(path, size);
+
+		try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+				StandardOpenOption.APPEND)) {
+			for (URL url : urls) {
+				writer.write(url.toString());
+				writer.newLine();
+			}
+		}
+		return Files.size(path);
+	}
+
+	/**
+	 * Cuts the file at @param path to @param size bytes, creating it if it does
+	 * not exist
+	 *
+	 * @param path - path of the file
+	 * @param size - size to keep
+	 * @throws IOException if the file cannot be written
+	 */
+	private static void truncate(Path path, long size) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			if (channel.size() < size) {
+				throw new IOException("Checkpoint log is too short: " + path);
+			}
+			channel.truncate(size);
+		}
+	}
+
+	/**
+	 * Returns the lines of the file at @param path
+	 *
+	 * @param path - path of the file
+	 * @return - lines of the file
+	 * @throws IOException if the file cannot be read
+	 */
+	private static List<String> readLines(Path path) throws IOException {
+		ArrayList<String> lines = new ArrayList<>();
+		try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lines.add(line);
+			}
+		}
+		return lines;
+	}
+
+	/**
+	 * A URL that is done, with the postings of its page
+	 */
+	private static class Done {
+
+		/**
+		 * Cleaned URL
+		 */
+		private final URL url;
+
+		/**
+		 * Postings of the page, or null
+		 */
+		private final InvertedIndex postings;
+
+		/**
+		 * Constructor
+		 *
+		 * @param url      - cleaned URL
+		 * @param postings - postings of the page, or null
+		 */
+		private Done(URL url, InvertedIndex postings) {
+			this.url = url;
+			this.postings = postings;
+		}
+	}
+
+	/**
+	 * Background thread that writes a checkpoint every interval
+	 */
+	private class Writer extends Thread {
+
+		/**
+		 * Used to signal the writer should stop
+		 */
+		private boolean shutdown;
+
+		/**
+		 * Creates the writer as a daemon thread, so it never keeps the program
+		 * running
+		 */
+		private Writer() {
+			setDaemon(true);
+			shutdown = false;
+		}
+
+		/**
+		 * Signals the writer to stop
+		 */
+		private synchronized void shutdown() {
+			shutdown = true;
+			notifyAll();
+		}
+
+		/**
+		 * Waits for the interval or until the writer is stopped
+		 *
+		 * @return - False if the writer should stop
+		 */
+		private synchronized boolean await() {
+			long end = System.currentTimeMillis() + interval;
+			long now;
+			while (!shutdown && (now = System.currentTimeMillis()) < end) {
+				try {
+					wait(end - now);
+				} catch (InterruptedException e) {
+					System.err.println("Warning: Checkpoint writer interrupted.");
+					Thread.currentThread().interrupt();
+					return false;
+				}
+			}
+			return !shutdown;
+		}
+
+		@Override
+		public void run() {
+			while (await()) {
+				try {
+					write();
+				} catch (IOException e) {
+					System.err.println("Warning: Unable to write crawl checkpoint.");
+				}
+			}
+		}
+	}
+}
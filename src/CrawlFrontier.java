@@ -0,0 +1,244 @@
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * The URLs a crawl has seen and the URLs it has yet to fetch. A link is cleaned
+ * and checked against the visited set before it is queued, so a page that was
+ * already seen costs one hash lookup and no task. The visited set keeps a 64-bit
+ * hash of every cleaned URL instead of the URL itself, and can be replaced by a
+ * {@link BloomFilter} of fixed size for very large crawls. URLs are never
+ * compared with {@link URL#equals(Object)}, which may resolve host names.
+ *
+ * Every host has its own FIFO queue, and {@link #poll()} takes one URL from each
+ * host with queued URLs in turn, so one host with many links cannot hold up the
+ * others. The crawl limit is a counter that is reserved with compare-and-set,
+ * so checking and counting a link takes no lock. Only queueing and polling a
+ * URL share one short lock, so a host with queued URLs is always in the ready
+ * queue and every poll finds a URL while any is queued.
+ *
+ * @author Porfirio Mohabir
+ *
+ */
+public class CrawlFrontier {
+
+	/**
+	 * Maximum number of URLs to crawl
+	 */
+	private final int limit;
+
+	/**
+	 * Number of URLs accepted so far
+	 */
+	private final AtomicInteger accepted;
+
+	/**
+	 * Hashes of the visited URLs, or null if a Bloom filter is used
+	 */
+	private final Set<Long> hashes;
+
+	/**
+	 * Bloom filter of the visited URLs, or null if the hashes are kept
+	 */
+	private final BloomFilter bloom;
+
+	/**
+	 * Queue of every host that had a URL
+	 */
+	private final ConcurrentHashMap<String, Host> hosts;
+
+	/**
+	 * Hosts with queued URLs, in the order they get their next turn. Guards the
+	 * URLs of every host.
+	 */
+	private final ArrayDeque<Host> ready;
+
+	/**
+	 * Creates a frontier that accepts at most @param limit URLs, and keeps the
+	 * hashes of the visited URLs
+	 *
+	 * @param limit - maximum number of URLs to crawl
+	 */
+	public CrawlFrontier(int limit) {
+		this(limit, false);
+	}
+
+	/**
+	 * Creates a frontier that accepts at most @param limit URLs, and keeps the
+	 * visited URLs in a Bloom filter sized for the limit if @param bloom is True.
+	 * A Bloom filter may rarely mistake a new URL for a visited one, so that URL
+	 * is not crawled.
+	 *
+	 * @param limit - maximum number of URLs to crawl
+	 * @param bloom - True to use a Bloom filter for the visited URLs
+	 */
+	public CrawlFrontier(int limit, boolean bloom) {
+		this.limit = Math.max(limit, 0);
+		accepted = new AtomicInteger();
+		this.hashes = bloom ? null : ConcurrentHashMap.newKeySet();
+		this.bloom = bloom ? new BloomFilter(this.limit) : null;
+		this.hosts = new ConcurrentHashMap<>();
+		this.ready = new ArrayDeque<>();
+	}
+
+	/**
+	 * Cleans @param url and queues it if it was not visited before and the limit
+	 * is not reached yet
+	 *
+	 * @param url - URL of a link
+	 * @return - the cleaned URL if it was queued, or null
+	 */
+	public URL offer(URL url) {
+		return offer(url, null);
+	}
+
+	/**
+	 * Cleans @param url and queues it if it was not visited before and the limit
+	 * is not reached yet. If it is accepted, @param listener is called with the
+	 * cleaned URL before it is queued, so before any thread can poll it.
+	 *
+	 * @param url      - URL of a link
+	 * @param listener - called with the cleaned URL if it is accepted, or null
+	 * @return - the cleaned URL if it was queued, or null
+	 */
+	public URL offer(URL url, Consumer<URL> listener) {
+		if (accepted.get() >= limit) {
+			return null;
+		}
+
+		URL clean = HtmlCleaner.clean(url);
+		if (!visit(hash(clean.toString()))) {
+			return null;
+		}
+
+		int count;
+		do {
+			count = accepted.get();
+			if (count >= limit) {
+				return null;
+			}
+		} while (!accepted.compareAndSet(count, count + 1));
+
+		if (listener != null) {
+			listener.accept(clean);
+		}
+		queue(clean);
+		return clean;
+	}
+
+	/**
+	 * Marks the cleaned @param url as visited and counts it against the limit
+	 * without checking either, and queues it if @param queued is True. Used to
+	 * rebuild the frontier from a checkpoint.
+	 *
+	 * @param url    - cleaned URL that was accepted before
+	 * @param queued - True if the URL still has to be crawled
+	 */
+	public void restore(URL url, boolean queued) {
+		visit(hash(url.toString()));
+		accepted.incrementAndGet();
+
+		if (queued) {
+			queue(url);
+		}
+	}
+
+	/**
+	 * Adds @param url to the queue of its host, and gives the host a turn if it
+	 * had no queued URLs
+	 *
+	 * @param url - cleaned URL
+	 */
+	private void queue(URL url) {
+		Host host = hosts.computeIfAbsent(ConnectionPool.getKey(url), key -> new Host());
+		synchronized (ready) {
+			host.urls.add(url);
+			if (!host.ready) {
+				host.ready = true;
+				ready.add(host);
+			}
+		}
+	}
+
+	/**
+	 * Removes the next URL from the queue of the host whose turn it is
+	 *
+	 * @return - the next URL to crawl, or null if no URL is queued
+	 */
+	public URL poll() {
+		synchronized (ready) {
+			Host host = ready.poll();
+			if (host == null) {
+				return null;
+			}
+
+			URL url = host.urls.poll();
+			if (host.urls.isEmpty()) {
+				host.ready = false;
+			} else {
+				ready.add(host);
+			}
+			return url;
+		}
+	}
+
+	/**
+	 * Returns the number of URLs accepted so far
+	 *
+	 * @return - number of URLs that were queued
+	 */
+	public int size() {
+		return accepted.get();
+	}
+
+	/**
+	 * Marks @param hash as visited
+	 *
+	 * @param hash - hash of a cleaned URL
+	 * @return - True if it was not visited before
+	 */
+	private boolean visit(long hash) {
+		return bloom != null ? bloom.add(hash) : hashes.add(hash);
+	}
+
+	/**
+	 * Returns a 64-bit hash of @param text, using FNV-1a followed by a final mix
+	 * so that similar URLs are spread over all bits
+	 *
+	 * @param text - cleaned URL
+	 * @return - hash of the text
+	 */
+	static long hash(String text) {
+		long hash = 0xCBF29CE484222325L;
+		for (int i = 0; i < text.length(); i++) {
+			hash ^= text.charAt(i);
+			hash *= 0x100000001B3L;
+		}
+
+		hash ^= hash >>> 33;
+		hash *= 0xFF51AFD7ED558CCDL;
+		hash ^= hash >>> 33;
+		hash *= 0xC4CEB9FE1A85EC53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	/**
+	 * Queued URLs of one host
+	 */
+	private static class Host {
+
+		/**
+		 * URLs in the order they were queued
+		 */
+		private final ArrayDeque<URL> urls = new ArrayDeque<>();
+
+		/**
+		 * True while the host is in the ready queue
+		 */
+		private boolean ready;
+	}
+}
@@ -0,0 +1,125 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.TreeMap;
+
+/**
+ * Assigns every location (file path or URL) a dense int ID exactly once and
+ * stores the word count of each location by its ID. The rest of the index
+ * works on the IDs, and the location Strings are only looked up again when
+ * results are returned or written out.
+ *
+ * @author Porfirio Mohabir
+ *
+ */
+public class DocumentTable {
+
+	/**
+	 * Maps each location to its ID
+	 */
+	private final HashMap<String, Integer> ids;
+
+	/**
+	 * Location of each ID
+	 */
+	private final ArrayList<String> locations;
+
+	/**
+	 * Word count of each ID
+	 */
+	private int[] counts;
+
+	/**
+	 * Creates an empty DocumentTable
+	 */
+	public DocumentTable() {
+		ids = new HashMap<>();
+		locations = new ArrayList<>();
+		counts = new int[16];
+	}
+
+	/**
+	 * Returns the ID of @param location, or -1 if it has not been added
+	 *
+	 * @param location - file path or URL
+	 * @return - ID of the location or -1
+	 */
+	public int getId(String location) {
+		Integer id = ids.get(location);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Adds @param location if it is not in the table yet and returns its ID
+	 *
+	 * @param location - file path or URL
+	 * @return - ID of the location
+	 */
+	public int add(String location) {
+		Integer id = ids.get(location);
+		if (id != null) {
+			return id;
+		}
+
+		int next = locations.size();
+		ids.put(location, next);
+		locations.add(location);
+
+		if (next == counts.length) {
+			counts = Arrays.copyOf(counts, counts.length * 2);
+		}
+		return next;
+	}
+
+	/**
+	 * Returns the location with the ID @param id
+	 *
+	 * @param id - ID of a location
+	 * @return - file path or URL
+	 */
+	public String getLocation(int id) {
+		return locations.get(id);
+	}
+
+	/**
+	 * Returns the word count of the location with the ID @param id
+	 *
+	 * @param id - ID of a location
+	 * @return - word count
+	 */
+	public int getCount(int id) {
+		return counts[id];
+	}
+
+	/**
+	 * Adds @param count to the word count of the location with ID @param id
+	 *
+	 * @param id    - ID of a location
+	 * @param count - number of words to add
+	 */
+	public void addCount(int id, int count) {
+		counts[id] += count;
+	}
+
+	/**
+	 * Returns the number of locations in the table
+	 *
+	 * @return - number of locations
+	 */
+	public int size() {
+		return locations.size();
+	}
+
+	/**
+	 * Returns every location mapped to its word count, sorted by location
+	 *
+	 * @return - TreeMap of locations and word counts
+	 */
+	public TreeMap<String, Integer> toMap() {
+		TreeMap<String, Integer> map = new TreeMap<>();
+		for (int id = 0; id < locations.size(); id++) {
+			map.put(locations.get(id), counts[id]);
+		}
+		return map;
+	}
+}
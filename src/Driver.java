@@ -25,11 +25,14 @@ public class Driver {
 		Instant.now();
 
 		ArgumentMap map = new ArgumentMap(args);
-		InvertedIndex index;
+		WritableInvertedIndex index;
 		InvertedIndexBuilder indexBuilder;
 		QueryBuilderInterface query;
 		WorkQueue queue = null;
+		SegmentedInvertedIndex segmented = null;
+		ShardedInvertedIndex sharded = null;
 		WebCrawler webCrawler;
+		PipelineIndexBuilder pipeline = null;
 
 		boolean matchFlag = false;
 		if (map.hasFlag("-exact")) {
@@ -47,6 +50,27 @@ public class Driver {
 
 		}
 
+		int numTop = 0;
+		if (map.hasFlag("-top")) {
+
+			try {
+				numTop = Integer.parseInt(map.getString("-top"));
+			} catch (NumberFormatException e) {
+				System.out.println("Value is invalid");
+			}
+
+		}
+
+		MappedInvertedIndex loaded = null;
+		if (map.hasValue("-load")) {
+			try {
+				loaded = new MappedInvertedIndex(map.getPath(map.getString("-load")));
+			} catch (IOException e) {
+				System.out.println("Unable to Load Index File");
+				System.out.println("Path Argument(s) (Directory/File): " + map.getString("-load"));
+			}
+		}
+
 		if (map.hasFlag("-threads") || map.hasFlag("-url")) {
 			int numThreads = 5;
 			try {
@@ -66,23 +90,99 @@ public class Driver {
 				System.out.println("Invalid!");
 			}
 
-			queue = new WorkQueue(numThreads);
-			ThreadSafeInvertedIndex threadSafeIndex = new ThreadSafeInvertedIndex();
+			if (map.hasFlag("-timeout")) {
+				int timeout = HttpsFetcher.DEFAULT_READ_TIMEOUT;
+				try {
+					timeout = Integer.parseInt(map.getString("-timeout"));
+				} catch (NumberFormatException e) {
+					System.out.println("Value is invalid");
+				}
+				HttpsFetcher.setTimeouts(timeout, timeout, 4 * timeout);
+			}
+
+			if (map.hasFlag("-maxbytes")) {
+				try {
+					HttpsFetcher.setMaxBodySize(Integer.parseInt(map.getString("-maxbytes")));
+				} catch (NumberFormatException e) {
+					System.out.println("Value is invalid");
+				}
+			}
+
+			queue = new WorkQueue(numThreads, map.hasFlag("-forkjoin"));
+			WritableInvertedIndex threadSafeIndex;
+			if (map.hasFlag("-shards")) {
+				int numShards = ThreadSafeInvertedIndex.DEFAULT_STRIPES;
+				try {
+					numShards = Integer.parseInt(map.getString("-shards"));
+				} catch (NumberFormatException e) {
+					System.out.println("Value is invalid");
+				}
+				sharded = new ShardedInvertedIndex(numShards, queue);
+				threadSafeIndex = sharded;
+			} else if (map.hasFlag("-segments")) {
+				segmented = new SegmentedInvertedIndex();
+				threadSafeIndex = segmented;
+			} else {
+				threadSafeIndex = new ThreadSafeInvertedIndex();
+			}
 			index = threadSafeIndex;
-			indexBuilder = new MultiThreadIndexBuilder(threadSafeIndex, queue);
-			query = new MultiThreadQueryBuilder(threadSafeIndex, queue);
+			if (map.hasFlag("-pipeline")) {
+				int[] stages = { 1, 1, 2, 1 };
+				if (map.hasValue("-pipeline")) {
+					try {
+						String[] values = map.getString("-pipeline").split(",");
+						for (int i = 0; i < stages.length && i < values.length; i++) {
+							stages[i] = Integer.parseInt(values[i].strip());
+						}
+					} catch (NumberFormatException e) {
+						System.out.println("Value is invalid");
+					}
+				}
+				pipeline = new PipelineIndexBuilder(threadSafeIndex, stages[0], stages[1], stages[2], stages[3]);
+				indexBuilder = pipeline;
+			} else {
+				indexBuilder = new MultiThreadIndexBuilder(threadSafeIndex, queue);
+			}
+
+			if (loaded == null) {
+				int connections = 0;
+				if (map.hasFlag("-virtual")) {
+					connections = 64;
+					if (map.hasValue("-virtual")) {
+						try {
+							connections = Integer.parseInt(map.getString("-virtual"));
+						} catch (NumberFormatException e) {
+							System.out.println("Value is invalid");
+						}
+					}
+					if (connections < 1) {
+						connections = 64;
+					}
+				}
+				CrawlCheckpoint checkpoint = null;
+				if (map.hasFlag("-checkpoint") || map.hasFlag("-resume")) {
+					checkpoint = new CrawlCheckpoint(map.getPath(map.getString("-checkpoint"), Path.of("checkpoint")));
+				}
 
-			webCrawler = new WebCrawler(threadSafeIndex, queue, numLimits);
-			webCrawler.crawl(url);
+				webCrawler = new WebCrawler(threadSafeIndex, queue, numLimits, connections, map.hasFlag("-bloom"),
+						checkpoint);
+				if (map.hasFlag("-resume")) {
+					webCrawler.resume(url);
+				} else {
+					webCrawler.crawl(url);
+				}
+			}
 		} else {
 			index = new InvertedIndex();
 			indexBuilder = new InvertedIndexBuilder(index);
-			query = new QueryBuilder(index);
 		}
 
-		if (map.hasValue("-path")) {
+		if (loaded == null && map.hasValue("-path")) {
 			try {
 				indexBuilder.addToInvertIndex(map.getPath(map.getString("-path")));
+				if (pipeline != null) {
+					System.out.print(pipeline.getReport());
+				}
 
 			} catch (IOException e2) {
 				System.out.println("Unable to Create Inverted Index Data Structure");
@@ -90,6 +190,31 @@ public class Driver {
 			}
 		}
 
+		InvertedIndexInterface snapshot;
+		if (loaded != null) {
+			snapshot = loaded;
+		} else if (sharded != null && !map.hasValue("-save")) {
+			snapshot = sharded;
+		} else {
+			FrozenInvertedIndex built = index.freeze();
+			snapshot = sharded != null ? sharded : built;
+
+			if (map.hasValue("-save")) {
+				try {
+					built.toBinary(map.getPath(map.getString("-save")));
+				} catch (IOException e) {
+					System.out.println("Unable to Save Index File");
+					System.out.println("Path Argument(s) (Directory/File): " + map.getString("-save"));
+				}
+			}
+		}
+
+		if (queue != null) {
+			query = new MultiThreadQueryBuilder(snapshot, queue, numTop);
+		} else {
+			query = new QueryBuilder(snapshot, numTop);
+		}
+
 		if (map.hasValue("-query")) {
 			try {
 				query.parseFile(map.getPath(map.getString("-query")), matchFlag);
@@ -101,7 +226,7 @@ public class Driver {
 
 		if (map.hasFlag("-locations")) {
 			try {
-				index.toLocationJSON(map.getPath(map.getString("-locations"), Path.of("locations.json")));
+				snapshot.toLocationJSON(map.getPath(map.getString("-locations"), Path.of("locations.json")));
 			} catch (IOException e) {
 				System.out.println("Unable to Output to Location File");
 				System.out.println("Path Argument(s) (Directory/File): " + map.getString("-path"));
@@ -110,7 +235,7 @@ public class Driver {
 
 		if (map.hasFlag("-index")) {
 			try {
-				index.toIndexJSON(map.getPath(map.getString("-index"), Path.of("index.json")));
+				snapshot.toIndexJSON(map.getPath(map.getString("-index"), Path.of("index.json")));
 			} catch (IOException e) {
 				System.out.println("Unable to Output Index File");
 				System.out.println("Path Argument(s) (Directory/File): " + map.getString("-path"));
@@ -130,6 +255,10 @@ public class Driver {
 			queue.shutdown();
 		}
 
+		if (segmented != null) {
+			segmented.shutdown();
+		}
+
 	}
 }
 
@@ -0,0 +1,527 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * An immutable, read-optimized snapshot of an InvertedIndex, created by
+ * InvertedIndex.freeze() once the index is built. Words are kept in a
+ * TermDictionary, so partial searches find the range of words that start with
+ * a query with two binary searches, and all postings are stored in contiguous
+ * int arrays. Location IDs are assigned in sorted location order and the word count
+ * of every location is computed ahead of time.
+ *
+ * Since nothing can change after it is created, the snapshot can be searched
+ * by any number of threads at once without locking.
+ *
+ * @author Porfirio Mohabir
+ *
+ */
+public class FrozenInvertedIndex implements InvertedIndexInterface {
+
+	/**
+	 * Sorted words
+	 */
+	private final TermDictionary words;
+
+	/**
+	 * Start of the postings of each word, with one extra entry at the end
+	 */
+	private final int[] wordStarts;
+
+	/**
+	 * Location ID of each posting, sorted within each word
+	 */
+	private final int[] postingLocations;
+
+	/**
+	 * Start of the positions of each posting, with one extra entry at the end
+	 */
+	private final int[] postingStarts;
+
+	/**
+	 * Positions of every posting, sorted within each posting
+	 */
+	private final int[] positions;
+
+	/**
+	 * Location IDs and word counts
+	 */
+	private final DocumentTable locations;
+
+	/**
+	 * Creates a FrozenInvertedIndex from arrays built by InvertedIndex.freeze()
+	 *
+	 * @param words            - sorted words
+	 * @param wordStarts       - start of the postings of each word
+	 * @param postingLocations - location ID of each posting
+	 * @param postingStarts    - start of the positions of each posting
+	 * @param positions        - positions of every posting
+	 * @param locations        - location IDs and word counts
+	 */
+	FrozenInvertedIndex(String[] words, int[] wordStarts, int[] postingLocations, int[] postingStarts,
+			int[] positions, DocumentTable locations) {
+		this.words = new TermDictionary(words);
+		this.wordStarts = wordStarts;
+		this.postingLocations = postingLocations;
+		this.postingStarts = postingStarts;
+		this.positions = positions;
+		this.locations = locations;
+	}
+
+	/**
+	 * Returns the index of @param word in the words array, or a negative number
+	 * if it does not exist
+	 *
+	 * @param word - word to find
+	 * @return - index of the word or a negative number
+	 */
+	private int findWord(String word) {
+		return words.find(word);
+	}
+
+	/**
+	 * Returns the index of the posting of @param word in @param location, or a
+	 * negative number if it does not exist
+	 *
+	 * @param word     - word to find
+	 * @param location - location to find
+	 * @return - index of the posting or a negative number
+	 */
+	private int findPosting(String word, String location) {
+		int index = findWord(word);
+		int id = locations.getId(location);
+
+		if (index < 0 || id < 0) {
+			return -1;
+		}
+
+		return Arrays.binarySearch(postingLocations, wordStarts[index], wordStarts[index + 1], id);
+	}
+
+	@Override
+	public void toIndexJSON(Path path) throws IOException {
+		TreeMap<String, TreeMap<String, Iterable<Integer>>> output = new TreeMap<>();
+
+		for (int i = 0; i < words.size(); i++) {
+			TreeMap<String, Iterable<Integer>> files = new TreeMap<>();
+
+			for (int p = wordStarts[i]; p < wordStarts[i + 1]; p++) {
+				int start = postingStarts[p];
+				int end = postingStarts[p + 1];
+				files.put(locations.getLocation(postingLocations[p]),
+						() -> Arrays.stream(positions, start, end).iterator());
+			}
+			output.put(words.get(i), files);
+		}
+
+		PrettyJSONWriter.asNestedNestedObject(output, path);
+	}
+
+	/**
+	 * Writes the index to a binary index file that can be opened with
+	 * MappedInvertedIndex. See MappedInvertedIndex for the layout of the file.
+	 *
+	 * @param path - Path to Binary Index Output File
+	 * @throws IOException
+	 */
+	public void toBinary(Path path) throws IOException {
+		byte[][] names = new byte[locations.size()][];
+		long locationsSize = 0;
+		for (int id = 0; id < names.length; id++) {
+			names[id] = locations.getLocation(id).getBytes(StandardCharsets.UTF_8);
+			locationsSize += 8 + names[id].length;
+		}
+
+		byte[][] terms = new byte[words.size()][];
+		long[] postingOffsets = new long[words.size()];
+		long dictionarySize = 8L * words.size();
+		long postingsSize = 0;
+		for (int i = 0; i < terms.length; i++) {
+			terms[i] = words.get(i).getBytes(StandardCharsets.UTF_8);
+			dictionarySize += 16 + terms[i].length;
+			postingOffsets[i] = postingsSize;
+
+			int previous = 0;
+			for (int p = wordStarts[i]; p < wordStarts[i + 1]; p++) {
+				int length = positionsSize(p);
+				postingsSize += varintSize(postingLocations[p] - previous)
+						+ varintSize(postingStarts[p + 1] - postingStarts[p]) + varintSize(length) + length;
+				previous = postingLocations[p];
+			}
+		}
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+			out.writeInt(MappedInvertedIndex.MAGIC);
+			out.writeInt(MappedInvertedIndex.VERSION);
+			out.writeInt(terms.length);
+			out.writeInt(names.length);
+			out.writeLong(MappedInvertedIndex.HEADER_SIZE);
+			out.writeLong(MappedInvertedIndex.HEADER_SIZE + locationsSize);
+			out.writeLong(MappedInvertedIndex.HEADER_SIZE + locationsSize + dictionarySize);
+
+			for (int id = 0; id < names.length; id++) {
+				out.writeInt(locations.getCount(id));
+				out.writeInt(names[id].length);
+				out.write(names[id]);
+			}
+
+			long entry = 8L * terms.length;
+			for (int i = 0; i < terms.length; i++) {
+				out.writeLong(entry);
+				entry += 16 + terms[i].length;
+			}
+
+			for (int i = 0; i < terms.length; i++) {
+				out.writeLong(postingOffsets[i]);
+				out.writeInt(wordStarts[i + 1] - wordStarts[i]);
+				out.writeInt(terms[i].length);
+				out.write(terms[i]);
+			}
+
+			for (int i = 0; i < terms.length; i++) {
+				int previous = 0;
+				for (int p = wordStarts[i]; p < wordStarts[i + 1]; p++) {
+					writeVarint(out, postingLocations[p] - previous);
+					writeVarint(out, postingStarts[p + 1] - postingStarts[p]);
+					writeVarint(out, positionsSize(p));
+					previous = postingLocations[p];
+
+					int position = 0;
+					for (int j = postingStarts[p]; j < postingStarts[p + 1]; j++) {
+						writeVarint(out, positions[j] - position);
+						position = positions[j];
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of bytes needed to write the positions of the posting at
+	 * index @param posting as varint deltas
+	 *
+	 * @param posting - index of a posting
+	 * @return - number of bytes
+	 */
+	private int positionsSize(int posting) {
+		int size = 0;
+		int previous = 0;
+		for (int j = postingStarts[posting]; j < postingStarts[posting + 1]; j++) {
+			size += varintSize(positions[j] - previous);
+			previous = positions[j];
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the number of bytes needed to write @param value as a varint
+	 *
+	 * @param value - non-negative int
+	 * @return - number of bytes, from 1 to 5
+	 */
+	private static int varintSize(int value) {
+		int size = 1;
+		while ((value >>>= 7) != 0) {
+			size++;
+		}
+		return size;
+	}
+
+	/**
+	 * Writes @param value to @param out as a varint, 7 bits per byte with the
+	 * lowest bits first
+	 *
+	 * @param out   - stream to write to
+	 * @param value - non-negative int
+	 * @throws IOException
+	 */
+	private static void writeVarint(DataOutputStream out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	@Override
+	public void toLocationJSON(Path path) throws IOException {
+		PrettyJSONWriter.asObject(locations.toMap(), path);
+	}
+
+	@Override
+	public int wordCount() {
+		return words.size();
+	}
+
+	@Override
+	public int wordCount(String word, String location) {
+		int posting = findPosting(word, location);
+		return posting < 0 ? 0 : postingStarts[posting + 1] - postingStarts[posting];
+	}
+
+	@Override
+	public int wordCount(String location) {
+		int id = locations.getId(location);
+		return id < 0 ? 0 : locations.getCount(id);
+	}
+
+	@Override
+	public int locationCount(String word) {
+		int index = findWord(word);
+		return index < 0 ? 0 : wordStarts[index + 1] - wordStarts[index];
+	}
+
+	@Override
+	public int locationCount() {
+		return locations.size();
+	}
+
+	@Override
+	public boolean containsWord(String word) {
+		return findWord(word) >= 0;
+	}
+
+	@Override
+	public boolean containsLocation(String location) {
+		return locations.getId(location) >= 0;
+	}
+
+	@Override
+	public boolean containsLocation(String word, String location) {
+		return findPosting(word, location) >= 0;
+	}
+
+	@Override
+	public boolean containsPosition(String word, String location, Integer position) {
+		int posting = findPosting(word, location);
+		return posting < 0 ? false
+				: Arrays.binarySearch(positions, postingStarts[posting], postingStarts[posting + 1], position) >= 0;
+	}
+
+	@Override
+	public Set<String> getWords() {
+		TreeSet<String> set = new TreeSet<>();
+		for (int i = 0; i < words.size(); i++) {
+			set.add(words.get(i));
+		}
+		return Collections.unmodifiableSet(set);
+	}
+
+	@Override
+	public Set<String> getLocations(String word) {
+		int index = findWord(word);
+		if (index < 0) {
+			return Collections.emptySet();
+		}
+
+		TreeSet<String> files = new TreeSet<>();
+		for (int p = wordStarts[index]; p < wordStarts[index + 1]; p++) {
+			files.add(locations.getLocation(postingLocations[p]));
+		}
+		return Collections.unmodifiableSet(files);
+	}
+
+	/**
+	 * Adds the number of matches of the word at @param index in each location to
+	 * the @param accumulator
+	 *
+	 * @param accumulator - ScoreAccumulator of the current search
+	 * @param index       - index of a word in the TermDictionary
+	 * @param ids         - ID to use in the accumulator for each location ID of
+	 *                    this index, or null to use them as they are
+	 */
+	private void advancedSearch(ScoreAccumulator accumulator, int index, int[] ids) {
+		for (int p = wordStarts[index]; p < wordStarts[index + 1]; p++) {
+			int id = ids == null ? postingLocations[p] : ids[postingLocations[p]];
+			accumulator.add(id, postingStarts[p + 1] - postingStarts[p]);
+		}
+	}
+
+	/**
+	 * Adds the matches of every query in @param queries to the @param accumulator
+	 * without creating any Results, so the matches of several indexes can be
+	 * added up before the Results are created.
+	 *
+	 * @param accumulator - ScoreAccumulator of the current search
+	 * @param queries     - Collection of Queries
+	 * @param exact       - True for exact matches, False for partial matches
+	 * @param ids         - ID to use in the accumulator for each location ID of
+	 *                    this index, or null to use them as they are
+	 */
+	void accumulate(ScoreAccumulator accumulator, Collection<String> queries, boolean exact, int[] ids) {
+		for (String query : queries) {
+			if (exact) {
+				int index = findWord(query);
+				if (index >= 0) {
+					advancedSearch(accumulator, index, ids);
+				}
+				continue;
+			}
+
+			int end = words.prefixEnd(query);
+			for (int index = words.prefixStart(query); index < end; index++) {
+				advancedSearch(accumulator, index, ids);
+			}
+		}
+	}
+
+	@Override
+	public List<Result> exactSearch(Collection<String> queries, int limit) {
+		ScoreAccumulator accumulator = ScoreAccumulator.get();
+		try {
+			accumulate(accumulator, queries, true, null);
+			return accumulator.getResults(locations, limit);
+		} finally {
+			accumulator.clear();
+		}
+	}
+
+	@Override
+	public List<Result> partialSearch(Collection<String> queries, int limit) {
+		ScoreAccumulator accumulator = ScoreAccumulator.get();
+		try {
+			accumulate(accumulator, queries, false, null);
+			return accumulator.getResults(locations, limit);
+		} finally {
+			accumulator.clear();
+		}
+	}
+
+	/**
+	 * Returns the total number of positions in the index
+	 *
+	 * @return - number of positions
+	 */
+	int size() {
+		return positions.length;
+	}
+
+	/**
+	 * Returns the location IDs and word counts of the index
+	 *
+	 * @return - DocumentTable of the index
+	 */
+	DocumentTable getLocationTable() {
+		return locations;
+	}
+
+	/**
+	 * Merges @param indexes into one FrozenInvertedIndex. Words and locations are
+	 * merged in sorted order, and the positions of a word in a location that is
+	 * found in more than one index are combined without duplicates, so the result
+	 * is the same as freezing one InvertedIndex with everything added to it.
+	 *
+	 * @param indexes - indexes to merge
+	 * @return - merged FrozenInvertedIndex
+	 */
+	static FrozenInvertedIndex merge(List<FrozenInvertedIndex> indexes) {
+		int k = indexes.size();
+
+		TreeSet<String> names = new TreeSet<>();
+		int postingCount = 0;
+		int positionCount = 0;
+		ArrayList<String> all = new ArrayList<>();
+		for (FrozenInvertedIndex other : indexes) {
+			for (int id = 0; id < other.locations.size(); id++) {
+				names.add(other.locations.getLocation(id));
+			}
+			for (int i = 0; i < other.words.size(); i++) {
+				all.add(other.words.get(i));
+			}
+			postingCount += other.postingLocations.length;
+			positionCount += other.positions.length;
+		}
+
+		DocumentTable table = new DocumentTable();
+		for (String name : names) {
+			table.add(name);
+		}
+
+		int[][] ids = new int[k][];
+		for (int s = 0; s < k; s++) {
+			DocumentTable theirs = indexes.get(s).locations;
+			ids[s] = new int[theirs.size()];
+			for (int id = 0; id < ids[s].length; id++) {
+				ids[s][id] = table.getId(theirs.getLocation(id));
+			}
+		}
+
+		String[] words = all.stream().sorted().distinct().toArray(String[]::new);
+		int[] wordStarts = new int[words.length + 1];
+		int[] postingLocations = new int[postingCount];
+		int[] postingStarts = new int[postingCount + 1];
+		int[] positions = new int[positionCount];
+
+		int[] cursors = new int[k];
+		long[] order = new long[postingCount];
+		int[] sources = new int[postingCount];
+		int[] sourcePostings = new int[postingCount];
+		int posting = 0;
+		int position = 0;
+
+		for (int w = 0; w < words.length; w++) {
+			wordStarts[w] = posting;
+
+			int size = 0;
+			for (int s = 0; s < k; s++) {
+				FrozenInvertedIndex other = indexes.get(s);
+				if (cursors[s] < other.words.size() && other.words.equals(cursors[s], words[w])) {
+					int word = cursors[s]++;
+					for (int p = other.wordStarts[word]; p < other.wordStarts[word + 1]; p++) {
+						order[size] = ((long) ids[s][other.postingLocations[p]] << 32) | size;
+						sources[size] = s;
+						sourcePostings[size++] = p;
+					}
+				}
+			}
+			Arrays.sort(order, 0, size);
+
+			for (int i = 0; i < size;) {
+				int id = (int) (order[i] >>> 32);
+				int start = position;
+				int first = i;
+
+				do {
+					FrozenInvertedIndex other = indexes.get(sources[(int) order[i]]);
+					int p = sourcePostings[(int) order[i]];
+					for (int j = other.postingStarts[p]; j < other.postingStarts[p + 1]; j++) {
+						positions[position++] = other.positions[j];
+					}
+					i++;
+				} while (i < size && (int) (order[i] >>> 32) == id);
+
+				if (i - first > 1) {
+					Arrays.sort(positions, start, position);
+					int end = start;
+					for (int j = start; j < position; j++) {
+						if (j == start || positions[j] != positions[end - 1]) {
+							positions[end++] = positions[j];
+						}
+					}
+					position = end;
+				}
+
+				postingLocations[posting] = id;
+				postingStarts[posting++] = start;
+				table.addCount(id, position - start);
+			}
+		}
+
+		wordStarts[words.length] = posting;
+		postingStarts[posting] = position;
+
+		return new FrozenInvertedIndex(words, wordStarts, Arrays.copyOf(postingLocations, posting),
+				Arrays.copyOf(postingStarts, posting + 1), Arrays.copyOf(positions, position), table);
+	}
+}
@@ -1,8 +1,16 @@
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.io.Writer;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -93,12 +101,12 @@ public class HtmlFetcher {
 
 		try {
 			url.openConnection();
-			headers = HttpsFetcher.fetchURL(url);
+			headers = HttpsFetcher.fetchURL(url, true);
 			codeStatus = getStatusCode(headers);
 
 			while (isRedirect(headers) && redirects > 0) {
 				String Url2 = headers.get("Location").get(0);
-				headers = HttpsFetcher.fetchURL(Url2);
+				headers = HttpsFetcher.fetchURL(new URL(Url2), true);
 				codeStatus = getStatusCode(headers);
 				redirects = redirects - 1;
 			}
@@ -113,6 +121,48 @@ public class HtmlFetcher {
 		return null;
 	}
 
+	/**
+	 * Fetches the resource at the URL like {@link #fetchHTML(URL, int)}, but
+	 * writes the HTML to @param writer while it is read from the network instead
+	 * of returning it as a single string. The bytes are decoded as UTF-8 in small
+	 * pieces, and the line endings are written the same way as in the string
+	 * returned by {@link #fetchHTML(URL, int)}, so the writer receives exactly
+	 * that string. The writer is not closed.
+	 *
+	 * If the fetch fails after part of the HTML was written, False is returned
+	 * and the caller should discard what the writer received.
+	 *
+	 * @param url       the url to fetch
+	 * @param redirects the number of times to follow redirects
+	 * @param writer    receives the html
+	 * @return {@code true} if the whole html was written, or {@code false} if
+	 *         unable to fetch the resource or the resource is not html
+	 *
+	 * @see HttpsFetcher#fetchURL(URL, OutputStream)
+	 */
+	public static boolean fetchHTML(URL url, int redirects, Writer writer) {
+		HtmlOutputStream output = new HtmlOutputStream(writer);
+
+		try {
+			Map<String, List<String>> headers = HttpsFetcher.fetchURL(url, output);
+
+			while (isRedirect(headers) && redirects > 0) {
+				String location = headers.get("Location").get(0);
+				headers = HttpsFetcher.fetchURL(new URL(location), output);
+				redirects = redirects - 1;
+			}
+
+			if (isHTML(headers) && getStatusCode(headers) == 200) {
+				output.close();
+				return true;
+			}
+		} catch (IOException e) {
+			System.out.println("URL is not a valid");
+		}
+
+		return false;
+	}
+
 	/**
 	 * Converts the {@link String} url into a {@link URL} object and then calls
 	 * {@link #fetchHTML(URL, int)}.
@@ -156,4 +206,144 @@ public class HtmlFetcher {
 	public static String fetchHTML(URL url) {
 		return fetchHTML(url, 0);
 	}
+
+	/**
+	 * Decodes the UTF-8 bytes of a body and writes the characters to a
+	 * {@link Writer}. Every line ending is written as the line separator, except
+	 * one at the very end, like lines joined by {@link #fetchHTML(URL, int)}.
+	 */
+	private static class HtmlOutputStream extends OutputStream {
+
+		/**
+		 * Receives the characters
+		 */
+		private final Writer writer;
+
+		/**
+		 * Decodes the bytes, and replaces malformed input like
+		 * {@link String#String(byte[], java.nio.charset.Charset)}
+		 */
+		private final CharsetDecoder decoder;
+
+		/**
+		 * Bytes that are not decoded yet
+		 */
+		private final ByteBuffer bytes;
+
+		/**
+		 * Decoded characters
+		 */
+		private final CharBuffer chars;
+
+		/**
+		 * True if a line ended and the line separator is not written yet
+		 */
+		private boolean lineEnd;
+
+		/**
+		 * True if the last character was a carriage return
+		 */
+		private boolean carriage;
+
+		/**
+		 * Creates a stream that writes the decoded characters to @param writer
+		 *
+		 * @param writer receives the characters
+		 */
+		private HtmlOutputStream(Writer writer) {
+			this.writer = writer;
+			this.decoder = StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+			this.bytes = ByteBuffer.allocate(8192);
+			this.chars = CharBuffer.allocate(8192);
+			this.lineEnd = false;
+			this.carriage = false;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] input, int offset, int length) throws IOException {
+			while (length > 0) {
+				int count = Math.min(length, bytes.remaining());
+				bytes.put(input, offset, count);
+				offset += count;
+				length -= count;
+
+				bytes.flip();
+				decode(false);
+				bytes.compact();
+			}
+		}
+
+		/**
+		 * Decodes the bytes that are left, and drops a line ending at the end
+		 *
+		 * @throws IOException if the writer throws one
+		 */
+		@Override
+		public void close() throws IOException {
+			bytes.flip();
+			decode(true);
+			while (decoder.flush(chars).isOverflow()) {
+				drain();
+			}
+			drain();
+			bytes.clear();
+		}
+
+		/**
+		 * Decodes the bytes in the buffer and writes the characters
+		 *
+		 * @param end True if no more bytes follow
+		 * @throws IOException if the writer throws one
+		 */
+		private void decode(boolean end) throws IOException {
+			while (decoder.decode(bytes, chars, end).isOverflow()) {
+				drain();
+			}
+			drain();
+		}
+
+		/**
+		 * Writes the decoded characters to the writer, in runs between the line
+		 * endings
+		 *
+		 * @throws IOException if the writer throws one
+		 */
+		private void drain() throws IOException {
+			char[] array = chars.array();
+			int length = chars.position();
+			int start = 0;
+
+			for (int i = 0; i < length; i++) {
+				char c = array[i];
+
+				if (c == '\n' || c == '\r') {
+					writer.write(array, start, i - start);
+					start = i + 1;
+
+					if (!(carriage && c == '\n')) {
+						if (lineEnd) {
+							writer.write(System.lineSeparator());
+						}
+						lineEnd = true;
+					}
+					carriage = c == '\r';
+				} else {
+					if (lineEnd) {
+						writer.write(System.lineSeparator());
+						lineEnd = false;
+					}
+					carriage = false;
+				}
+			}
+
+			writer.write(array, start, length - start);
+			chars.clear();
+		}
+	}
 }
@@ -0,0 +1,810 @@
+import java.io.Writer;
+
+/**
+ * Cleans HTML into plain text and the href links of its anchor tags without
+ * regular expressions, as a {@link Writer} that the HTML can be written to in
+ * pieces. The text and links are passed to a {@link Handler} as soon as they
+ * are known, so a page can be cleaned while it is still being read, and the
+ * whole page never has to be kept in memory.
+ *
+ * The HTML passes through a chain of stages: one removes the comments, one for
+ * each of the head, style, script, noscript and svg elements removes that
+ * element, and the last lists the links and removes the tags and entities. A
+ * stage only holds back the characters of a comment, element or entity that it
+ * has not decided yet, and passes all other characters on at once. The result
+ * is the same as the passes of {@link HtmlCleaner}, including how they treat
+ * unusual HTML: a comment may only span several lines in its leading or
+ * trailing whitespace, an element ends at the first later occurrence of its
+ * name followed by "&gt;", and removing a tag keeps its closing "&gt;".
+ *
+ * There is one stage for each element, because the order of the HtmlCleaner
+ * passes can be seen in the output, for example when a script contains the
+ * text "&lt;style".
+ *
+ * @see HtmlCleaner
+ *
+ * @author Porfirio Mohabir
+ *
+ */
+public class HtmlScanner extends Writer {
+
+	/**
+	 * Elements that are removed with their content, in the order they are removed
+	 */
+	private static final String[] ELEMENTS = { "head", "style", "script", "noscript", "svg" };
+
+	/**
+	 * Receives the text and links of the HTML
+	 */
+	public interface Handler {
+
+		/**
+		 * Receives the next character of the text
+		 *
+		 * @param c - character of the text
+		 */
+		public void text(char c);
+
+		/**
+		 * Receives the href value of the next anchor tag
+		 *
+		 * @param link - href value
+		 */
+		public void link(String link);
+	}
+
+	/**
+	 * First stage of the chain
+	 */
+	private final Stage first;
+
+	/**
+	 * True once the end of the HTML was passed through the stages
+	 */
+	private boolean closed;
+
+	/**
+	 * Creates a scanner that passes the text and links to @param handler
+	 *
+	 * @param handler - receives the text and links
+	 */
+	public HtmlScanner(Handler handler) {
+		this(handler, true);
+	}
+
+	/**
+	 * Creates a scanner that passes the text to @param handler, and the links too
+	 * if @param listLinks is True
+	 *
+	 * @param handler   - receives the text and links
+	 * @param listLinks - True to list the links
+	 */
+	public HtmlScanner(Handler handler, boolean listLinks) {
+		Stage stage = new TagStage(handler, listLinks);
+		for (int i = ELEMENTS.length - 1; i >= 0; i--) {
+			stage = new ElementStage(ELEMENTS[i], stage);
+		}
+		this.first = new CommentStage(stage);
+		this.closed = false;
+	}
+
+	/**
+	 * Returns the text of @param html without comments, elements, tags and
+	 * entities
+	 *
+	 * @param html - HTML content
+	 * @return - cleaned text
+	 */
+	public static String strip(String html) {
+		StringBuilder text = new StringBuilder(html.length());
+
+		HtmlScanner scanner = new HtmlScanner(new Handler() {
+			@Override
+			public void text(char c) {
+				text.append(c);
+			}
+
+			@Override
+			public void link(String link) {
+				// links are not listed
+			}
+		}, false);
+
+		scanner.write(html, 0, html.length());
+		scanner.close();
+		return text.toString();
+	}
+
+	@Override
+	public void write(char[] chars, int offset, int length) {
+		for (int i = offset; i < offset + length; i++) {
+			first.accept(chars[i]);
+		}
+	}
+
+	@Override
+	public void write(String html, int offset, int length) {
+		for (int i = offset; i < offset + length; i++) {
+			first.accept(html.charAt(i));
+		}
+	}
+
+	@Override
+	public void write(int c) {
+		first.accept((char) c);
+	}
+
+	@Override
+	public void flush() {
+		// characters that are held back depend on the rest of the HTML
+	}
+
+	/**
+	 * Ends the HTML, and passes on the characters that were held back
+	 */
+	@Override
+	public void close() {
+		if (!closed) {
+			closed = true;
+			first.finish();
+		}
+	}
+
+	/**
+	 * Returns True if @param c is whitespace, as matched by \s
+	 *
+	 * @param c - character
+	 * @return - True for space, tab, line feed, vertical tab, form feed and
+	 *         carriage return
+	 */
+	private static boolean isSpace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+
+	/**
+	 * Returns True if @param c ends a line, and is not matched by .
+	 *
+	 * @param c - character
+	 * @return - True for line terminators
+	 */
+	private static boolean isLineEnd(char c) {
+		return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+	}
+
+	/**
+	 * Returns @param c in lowercase if it is an ASCII letter
+	 *
+	 * @param c - character
+	 * @return - lowercase character
+	 */
+	private static char lower(char c) {
+		return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+	}
+
+	/**
+	 * One step of the chain
+	 */
+	private abstract static class Stage {
+
+		/**
+		 * Receives the next character
+		 *
+		 * @param c - character
+		 */
+		abstract void accept(char c);
+
+		/**
+		 * Receives the end of the HTML
+		 */
+		abstract void finish();
+	}
+
+	/**
+	 * A stage that removes parts of the HTML. The characters of a part that might
+	 * be removed are held back until it is decided. If it is not removed, the
+	 * first character is passed on and the others are read again, since another
+	 * part may start among them.
+	 */
+	private abstract static class CandidateStage extends Stage {
+
+		/**
+		 * Next stage
+		 */
+		private final Stage next;
+
+		/**
+		 * Characters of the part that is not decided yet
+		 */
+		protected final StringBuilder held;
+
+		/**
+		 * Characters to read again
+		 */
+		private final StringBuilder input;
+
+		/**
+		 * Position of the next character to read again
+		 */
+		private int position;
+
+		/**
+		 * Creates a stage that passes its characters to @param next
+		 *
+		 * @param next - next stage
+		 */
+		protected CandidateStage(Stage next) {
+			this.next = next;
+			this.held = new StringBuilder();
+			this.input = new StringBuilder();
+			this.position = 0;
+		}
+
+		@Override
+		final void accept(char c) {
+			step(c);
+			drain();
+		}
+
+		@Override
+		final void finish() {
+			while (held.length() > 0) {
+				end();
+				drain();
+			}
+			next.finish();
+		}
+
+		/**
+		 * Reads the characters that have to be read again
+		 */
+		private void drain() {
+			if (input.length() > 0) {
+				while (position < input.length()) {
+					step(input.charAt(position++));
+				}
+				input.setLength(0);
+				position = 0;
+			}
+		}
+
+		/**
+		 * Passes @param c to the next stage
+		 *
+		 * @param c - character
+		 */
+		protected final void emit(char c) {
+			next.accept(c);
+		}
+
+		/**
+		 * Removes the characters that are held back
+		 */
+		protected final void remove() {
+			held.setLength(0);
+			reset();
+		}
+
+		/**
+		 * Passes on the first character that is held back and reads the others
+		 * again, before any characters that are still waiting to be read again
+		 */
+		protected final void reject() {
+			String rest = input.substring(position);
+			input.setLength(0);
+			input.append(held, 1, held.length()).append(rest);
+			position = 0;
+
+			char first = held.charAt(0);
+			held.setLength(0);
+			reset();
+			emit(first);
+		}
+
+		/**
+		 * Reads one character
+		 *
+		 * @param c - character
+		 */
+		abstract void step(char c);
+
+		/**
+		 * Returns to the state outside of a part
+		 */
+		abstract void reset();
+
+		/**
+		 * Decides the part that is held back at the end of the HTML
+		 */
+		abstract void end();
+	}
+
+	/**
+	 * Removes the comments. The content of a comment may not contain a line
+	 * break, except in whitespace right after "&lt;!--" or right before "--&gt;".
+	 */
+	private static class CommentStage extends CandidateStage {
+
+		/** Outside of a comment. */
+		private static final int OUTSIDE = 0;
+
+		/** Inside "&lt;!--". */
+		private static final int OPENING = 1;
+
+		/** In the whitespace after "&lt;!--". */
+		private static final int LEADING = 2;
+
+		/** In the content. */
+		private static final int CONTENT = 3;
+
+		/** In whitespace inside the content. */
+		private static final int SPACE = 4;
+
+		/** After whitespace with a line break, where only "--&gt;" may follow. */
+		private static final int CLOSING = 5;
+
+		/**
+		 * Current state
+		 */
+		private int state;
+
+		/**
+		 * Number of "-" in a row, or characters of "&lt;!--" read
+		 */
+		private int count;
+
+		/**
+		 * True if the current whitespace contains a line break
+		 */
+		private boolean lineEnd;
+
+		/**
+		 * Creates a stage that passes its characters to @param next
+		 *
+		 * @param next - next stage
+		 */
+		private CommentStage(Stage next) {
+			super(next);
+			reset();
+		}
+
+		@Override
+		void reset() {
+			state = OUTSIDE;
+			count = 0;
+			lineEnd = false;
+		}
+
+		@Override
+		void end() {
+			reject();
+		}
+
+		@Override
+		void step(char c) {
+			if (state == OUTSIDE) {
+				if (c == '<') {
+					held.append(c);
+					state = OPENING;
+					count = 1;
+				} else {
+					emit(c);
+				}
+				return;
+			}
+
+			held.append(c);
+
+			switch (state) {
+			case OPENING:
+				if (c != "<!--".charAt(count)) {
+					reject();
+				} else if (++count == 4) {
+					state = LEADING;
+					count = 0;
+				}
+				break;
+
+			case LEADING:
+				if (!isSpace(c)) {
+					state = CONTENT;
+					content(c);
+				}
+				break;
+
+			case SPACE:
+				if (isSpace(c)) {
+					lineEnd |= isLineEnd(c);
+				} else if (lineEnd) {
+					state = CLOSING;
+					count = 0;
+					closing(c);
+				} else {
+					state = CONTENT;
+					count = 0;
+					content(c);
+				}
+				break;
+
+			case CLOSING:
+				closing(c);
+				break;
+
+			default:
+				content(c);
+				break;
+			}
+		}
+
+		/**
+		 * Reads @param c in the content of the comment
+		 *
+		 * @param c - character
+		 */
+		private void content(char c) {
+			if (c == '-') {
+				count++;
+			} else if (c == '>' && count >= 2) {
+				remove();
+			} else if (isSpace(c)) {
+				state = SPACE;
+				lineEnd = isLineEnd(c);
+				count = 0;
+			} else if (isLineEnd(c)) {
+				reject();
+			} else {
+				count = 0;
+			}
+		}
+
+		/**
+		 * Reads @param c after whitespace with a line break
+		 *
+		 * @param c - character
+		 */
+		private void closing(char c) {
+			if (count < 2 && c == '-') {
+				count++;
+			} else if (count == 2 && c == '>') {
+				remove();
+			} else {
+				reject();
+			}
+		}
+	}
+
+	/**
+	 * Removes one element with its content. An element starts at "&lt;" followed
+	 * by its name, and ends at the first later occurrence of its name followed by
+	 * optional whitespace and "&gt;".
+	 */
+	private static class ElementStage extends CandidateStage {
+
+		/** Outside of an element. */
+		private static final int OUTSIDE = 0;
+
+		/** Inside "&lt;" and the name. */
+		private static final int OPENING = 1;
+
+		/** Before the character that must follow the name. */
+		private static final int AFTER = 2;
+
+		/** Searching for the name at the end. */
+		private static final int SEARCH = 3;
+
+		/** In the whitespace after the name at the end. */
+		private static final int SPACE = 4;
+
+		/**
+		 * Lowercase name of the element
+		 */
+		private final String name;
+
+		/**
+		 * Current state
+		 */
+		private int state;
+
+		/**
+		 * Characters of the name read
+		 */
+		private int count;
+
+		/**
+		 * True once an element was not closed, since no later element can be
+		 * closed either
+		 */
+		private boolean unclosed;
+
+		/**
+		 * Creates a stage that removes @param name and passes its characters to
+		 * @param next
+		 *
+		 * @param name - lowercase name of the element
+		 * @param next - next stage
+		 */
+		private ElementStage(String name, Stage next) {
+			super(next);
+			this.name = name;
+			this.unclosed = false;
+			reset();
+		}
+
+		@Override
+		void reset() {
+			state = OUTSIDE;
+			count = 0;
+		}
+
+		@Override
+		void end() {
+			unclosed = true;
+			reject();
+		}
+
+		@Override
+		void step(char c) {
+			if (state == OUTSIDE) {
+				if (c == '<' && !unclosed) {
+					held.append(c);
+					state = OPENING;
+					count = 0;
+				} else {
+					emit(c);
+				}
+				return;
+			}
+
+			held.append(c);
+
+			switch (state) {
+			case OPENING:
+				if (lower(c) != name.charAt(count)) {
+					reject();
+				} else if (++count == name.length()) {
+					state = AFTER;
+				}
+				break;
+
+			case AFTER:
+				state = SEARCH;
+				count = 0;
+				break;
+
+			case SPACE:
+				if (c == '>') {
+					remove();
+				} else if (!isSpace(c)) {
+					state = SEARCH;
+					count = 0;
+					search(c);
+				}
+				break;
+
+			default:
+				search(c);
+				break;
+			}
+		}
+
+		/**
+		 * Reads @param c while searching for the name at the end of the element
+		 *
+		 * @param c - character
+		 */
+		private void search(char c) {
+			char lower = lower(c);
+
+			if (lower != name.charAt(count)) {
+				// the names do not overlap with themselves
+				count = lower == name.charAt(0) ? 1 : 0;
+			} else {
+				count++;
+			}
+
+			if (count == name.length()) {
+				state = SPACE;
+			}
+		}
+	}
+
+	/**
+	 * Lists the href values of the anchor tags, and removes the tags and
+	 * entities. A tag is removed from "&lt;" up to, but not including, the next
+	 * "&gt;". An entity is removed from "&amp;" to the next ";" if there is no
+	 * whitespace between them.
+	 */
+	private static class TagStage extends Stage {
+
+		/** Not inside an anchor tag. */
+		private static final int OUTSIDE = 0;
+
+		/** After "&lt;". */
+		private static final int OPENING = 1;
+
+		/** After "&lt;a", before the character that must follow it. */
+		private static final int AFTER = 2;
+
+		/** Searching for "href". */
+		private static final int SEARCH = 3;
+
+		/** In the whitespace before "=". */
+		private static final int EQUALS = 4;
+
+		/** In the whitespace before the quote. */
+		private static final int QUOTE = 5;
+
+		/** In the href value. */
+		private static final int VALUE = 6;
+
+		/**
+		 * Receives the text and links
+		 */
+		private final Handler handler;
+
+		/**
+		 * True to list the links
+		 */
+		private final boolean listLinks;
+
+		/**
+		 * State of the anchor tag
+		 */
+		private int state;
+
+		/**
+		 * Characters of "href" read
+		 */
+		private int count;
+
+		/**
+		 * href value read so far
+		 */
+		private final StringBuilder link;
+
+		/**
+		 * True inside a tag
+		 */
+		private boolean tag;
+
+		/**
+		 * Text of the entity that is not decided yet, starting at "&amp;"
+		 */
+		private final StringBuilder entity;
+
+		/**
+		 * Creates a stage that passes the text and links to @param handler
+		 *
+		 * @param handler   - receives the text and links
+		 * @param listLinks - True to list the links
+		 */
+		private TagStage(Handler handler, boolean listLinks) {
+			this.handler = handler;
+			this.listLinks = listLinks;
+			this.state = OUTSIDE;
+			this.count = 0;
+			this.link = new StringBuilder();
+			this.tag = false;
+			this.entity = new StringBuilder();
+		}
+
+		@Override
+		void accept(char c) {
+			if (listLinks) {
+				anchor(c);
+			}
+
+			if (c == '<') {
+				tag = true;
+				return;
+			}
+
+			if (tag) {
+				if (c != '>') {
+					return;
+				}
+				tag = false;
+			}
+
+			if (entity.length() > 0) {
+				entity.append(c);
+
+				if (c == ';') {
+					if (entity.length() > 2) {
+						entity.setLength(0);
+					} else {
+						release();
+					}
+				} else if (isSpace(c)) {
+					release();
+				}
+			} else if (c == '&') {
+				entity.append(c);
+			} else {
+				handler.text(c);
+			}
+		}
+
+		/**
+		 * Passes on the text of an entity that is not removed
+		 */
+		private void release() {
+			for (int i = 0; i < entity.length(); i++) {
+				handler.text(entity.charAt(i));
+			}
+			entity.setLength(0);
+		}
+
+		/**
+		 * Reads @param c while looking for the href value of an anchor tag
+		 *
+		 * @param c - character
+		 */
+		private void anchor(char c) {
+			switch (state) {
+			case OPENING:
+				state = c == 'a' || c == 'A' ? AFTER : OUTSIDE;
+				break;
+
+			case AFTER:
+				state = c == '>' ? OUTSIDE : SEARCH;
+				count = 0;
+				return;
+
+			case EQUALS:
+				if (c == '=') {
+					state = QUOTE;
+				} else if (!isSpace(c)) {
+					state = SEARCH;
+					count = 0;
+				}
+				break;
+
+			case QUOTE:
+				if (c == '"') {
+					state = VALUE;
+					link.setLength(0);
+				} else if (!isSpace(c)) {
+					state = SEARCH;
+					count = 0;
+				}
+				break;
+
+			case VALUE:
+				if (c == '#' || c == '"') {
+					handler.link(link.toString());
+					state = OUTSIDE;
+				} else {
+					link.append(c);
+				}
+				break;
+
+			default:
+				break;
+			}
+
+			if (state == SEARCH) {
+				if (c == '>') {
+					state = OUTSIDE;
+				} else if (lower(c) == "href".charAt(count)) {
+					if (++count == 4) {
+						state = EQUALS;
+					}
+				} else {
+					// "href" does not overlap with itself
+					count = lower(c) == 'h' ? 1 : 0;
+				}
+			} else if (state == OUTSIDE && c == '<') {
+				state = OPENING;
+			}
+		}
+
+		@Override
+		void finish() {
+			if (state == VALUE) {
+				handler.link(link.toString());
+			}
+			state = OUTSIDE;
+			release();
+		}
+	}
+}
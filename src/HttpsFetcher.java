@@ -1,9 +1,15 @@
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.io.StringReader;
+import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.net.UnknownHostException;
@@ -23,28 +29,387 @@ import javax.net.ssl.SSLSocketFactory;
  */
 public class HttpsFetcher {
 
+	/** Default time to wait for a connection, in milliseconds. */
+	public static final int DEFAULT_CONNECT_TIMEOUT = 10_000;
+
+	/** Default time to wait for each read of the response, in milliseconds. */
+	public static final int DEFAULT_READ_TIMEOUT = 30_000;
+
+	/** Default maximum size of a response body, in bytes. */
+	public static final int DEFAULT_MAX_BODY_SIZE = 8 * 1024 * 1024;
+
+	/** Maximum length of the status line or of one header, in bytes. */
+	private static final int MAX_LINE = 16 * 1024;
+
+	/**
+	 * Persistent connections shared by every fetch
+	 */
+	private static final ConnectionPool POOL = new ConnectionPool();
+
+	/**
+	 * Failures of every host
+	 */
+	private static final CircuitBreaker BREAKER = new CircuitBreaker();
+
+	/** Time to wait for a connection, in milliseconds. */
+	private static volatile int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+
+	/** Time to wait for each read of the response, in milliseconds. */
+	private static volatile int readTimeout = DEFAULT_READ_TIMEOUT;
+
+	/** Time to wait for the whole response, in milliseconds. */
+	private static volatile int requestTimeout = 4 * DEFAULT_READ_TIMEOUT;
+
+	/** Maximum size of a response body, in bytes. */
+	private static volatile int maxBodySize = DEFAULT_MAX_BODY_SIZE;
+
+	/**
+	 * Sets the time to wait for a connection to @param connect milliseconds, the
+	 * time to wait for each read to @param read milliseconds, and the time to wait
+	 * for the whole response to @param request milliseconds. A value of 0 waits
+	 * forever.
+	 *
+	 * @param connect time to wait for a connection
+	 * @param read    time to wait for each read of the response
+	 * @param request time to wait for the whole response
+	 */
+	public static void setTimeouts(int connect, int read, int request) {
+		connectTimeout = Math.max(connect, 0);
+		readTimeout = Math.max(read, 0);
+		requestTimeout = Math.max(request, 0);
+	}
+
+	/**
+	 * Sets the maximum size of a response body to @param bytes. Longer bodies are
+	 * cut off after that many bytes.
+	 *
+	 * @param bytes maximum size of a response body
+	 */
+	public static void setMaxBodySize(int bytes) {
+		maxBodySize = Math.max(bytes, 0);
+	}
+
 	/**
 	 * Fetches the headers and content for the specified URL. The content is placed
-	 * as a list of all the lines fetched under the "Content" key.
+	 * as a list of all the lines fetched under the "Content" key. An idle
+	 * connection to the same host is reused if there is one, and the connection
+	 * is kept open for later requests if the response could be read completely.
 	 *
 	 * @param url the url to fetch
 	 * @return a map with the headers and content
 	 * @throws IOException if unable to fetch headers and content
 	 */
 	public static Map<String, List<String>> fetchURL(URL url) throws IOException {
-		try (Socket socket = openConnection(url);
-				PrintWriter request = new PrintWriter(socket.getOutputStream());
-				InputStreamReader input = new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8);
-				BufferedReader response = new BufferedReader(input);) {
-			printGetRequest(request, url);
-			Map<String, List<String>> headers = getHeaderFields(response);
-			List<String> content = getContent(response);
-			headers.put("Content", content);
+		return fetchURL(url, false);
+	}
+
+	/**
+	 * Fetches the headers and content for the specified URL, like
+	 * {@link #fetchURL(URL)}. If @param htmlOnly is True, the body is only read
+	 * if the status code is 200 and the content type is HTML, and the content is
+	 * empty otherwise.
+	 *
+	 * Requests to a host are refused with an IOException while its circuit
+	 * breaker is open, after too many requests to it failed in a row.
+	 *
+	 * @param url      the url to fetch
+	 * @param htmlOnly True to skip bodies that are not HTML
+	 * @return a map with the headers and content
+	 * @throws IOException if unable to fetch headers and content
+	 *
+	 * @see CircuitBreaker
+	 */
+	public static Map<String, List<String>> fetchURL(URL url, boolean htmlOnly) throws IOException {
+		return fetchURL(url, htmlOnly, null);
+	}
+
+	/**
+	 * Fetches the headers for the specified URL, like
+	 * {@link #fetchURL(URL, boolean)} with htmlOnly set to True, but writes the
+	 * body of an HTML response to @param output while it is read instead of
+	 * keeping it under the "Content" key. The bytes are written as they arrive, so
+	 * the page can be parsed while the rest of it is still on the network, and
+	 * the body never has to be kept in memory.
+	 *
+	 * @param url    the url to fetch
+	 * @param output receives the bytes of the body
+	 * @return a map with the headers
+	 * @throws IOException if unable to fetch headers and content, or if @param
+	 *                     output throws one
+	 */
+	public static Map<String, List<String>> fetchURL(URL url, OutputStream output) throws IOException {
+		return fetchURL(url, true, output);
+	}
+
+	/**
+	 * Fetches the headers and content for the specified URL, and writes the body
+	 * to @param output if it is not null
+	 *
+	 * @param url      the url to fetch
+	 * @param htmlOnly True to skip bodies that are not HTML
+	 * @param output   receives the bytes of the body, or null to keep them under
+	 *                 the "Content" key
+	 * @return a map with the headers, and the content if there is no output
+	 * @throws IOException if unable to fetch headers and content
+	 */
+	private static Map<String, List<String>> fetchURL(URL url, boolean htmlOnly, OutputStream output)
+			throws IOException {
+		String host = ConnectionPool.getKey(url);
+		if (!BREAKER.allow(host)) {
+			throw new IOException("Too many failed requests to " + url.getHost());
+		}
+
+		boolean success = false;
+		try {
+			ConnectionPool.Connection connection = POOL.acquire(url);
+			Body body = new Body(output);
+			Map<String, List<String>> results;
+
+			try {
+				results = fetchURL(connection, url, htmlOnly, body);
+			} catch (IOException e) {
+				if (!connection.isReused() || body.size() > 0) {
+					throw e;
+				}
+				// the server may have closed the idle connection, so try a new one
+				results = fetchURL(POOL.open(url), url, htmlOnly, body);
+			}
 
-			return headers;
+			success = true;
+			return results;
+		} finally {
+			if (success) {
+				BREAKER.success(host);
+			} else {
+				BREAKER.failure(host);
+			}
 		}
 	}
 
+	/**
+	 * Sends a GET request for @param url on @param connection and reads the
+	 * response. The body is framed by its Content-Length or chunked transfer
+	 * encoding, and the connection is returned to the pool afterwards. If the
+	 * body is only ended by closing the connection, was cut off or skipped, or the
+	 * server asks to close it, the connection is closed instead.
+	 *
+	 * @param connection the connection to send the request on
+	 * @param url        the url to fetch
+	 * @param htmlOnly   True to skip bodies that are not HTML
+	 * @param body       receives the body
+	 * @return a map with the headers, and the content if the body is kept
+	 * @throws IOException if unable to fetch headers and content
+	 */
+	private static Map<String, List<String>> fetchURL(ConnectionPool.Connection connection, URL url,
+			boolean htmlOnly, Body body) throws IOException {
+		boolean keepAlive = false;
+		long deadline = requestTimeout > 0 ? System.currentTimeMillis() + requestTimeout : Long.MAX_VALUE;
+
+		try {
+			String resource = url.getFile().isEmpty() ? "/" : url.getFile();
+			String request = String.format("GET %s HTTP/1.1\r\nHost: %s\r\nConnection: keep-alive\r\n\r\n", resource,
+					url.getHost());
+
+			OutputStream output = connection.getOutputStream();
+			output.write(request.getBytes(StandardCharsets.UTF_8));
+			output.flush();
+
+			InputStream input = connection.getInputStream();
+			String status = readLine(input, deadline);
+			if (status == null) {
+				throw new EOFException("Connection closed before the response");
+			}
+
+			Map<String, List<String>> results = new HashMap<>();
+			results.put(null, List.of(status));
+
+			String line;
+			while ((line = readLine(input, deadline)) != null && !line.isBlank()) {
+				String[] split = line.split(":\\s+", 2);
+				assert split.length == 2;
+
+				results.putIfAbsent(split[0], new ArrayList<>());
+				results.get(split[0]).add(split[1]);
+			}
+
+			String encoding = getHeader(results, "Transfer-Encoding");
+			String length = getHeader(results, "Content-Length");
+			int code = HtmlFetcher.getStatusCode(results);
+			int limit = maxBodySize;
+
+			if ((code >= 100 && code < 200) || code == 204 || code == 304) {
+				keepAlive = true;
+			} else if (htmlOnly && (code != 200 || !HtmlFetcher.isHTML(results))) {
+				// nothing will use the body, so only read it if it is short
+				if (length != null && Long.parseLong(length.trim()) <= MAX_LINE) {
+					int size = Integer.parseInt(length.trim());
+					keepAlive = read(input, new Body(OutputStream.nullOutputStream()), size, deadline) == size;
+				}
+			} else if (encoding != null && encoding.trim().toLowerCase().endsWith("chunked")) {
+				keepAlive = readChunked(input, body, limit, deadline);
+			} else if (length != null) {
+				long size = Long.parseLong(length.trim());
+				keepAlive = size <= limit && read(input, body, (int) size, deadline) == size;
+				if (size > limit) {
+					read(input, body, limit, deadline);
+				}
+			} else {
+				read(input, body, limit, deadline);
+			}
+
+			String close = getHeader(results, "Connection");
+			if (close != null && close.trim().equalsIgnoreCase("close") || status.startsWith("HTTP/1.0")) {
+				keepAlive = false;
+			}
+
+			if (body.kept != null) {
+				String content = body.kept.toString(StandardCharsets.UTF_8);
+				results.put("Content", getContent(new BufferedReader(new StringReader(content))));
+			}
+			return results;
+		} catch (NumberFormatException e) {
+			throw new IOException("Invalid Content-Length", e);
+		} finally {
+			if (keepAlive) {
+				POOL.release(connection);
+			} else {
+				connection.close();
+			}
+		}
+	}
+
+	/**
+	 * Returns the first value of the header @param name, ignoring case, or null
+	 *
+	 * @param headers a map of header fields to a list of header values
+	 * @param name    the name of the header
+	 * @return the first value of the header or null
+	 */
+	private static String getHeader(Map<String, List<String>> headers, String name) {
+		for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+			if (name.equalsIgnoreCase(entry.getKey()) && !entry.getValue().isEmpty()) {
+				return entry.getValue().get(0);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Throws a SocketTimeoutException if @param deadline has passed
+	 *
+	 * @param deadline time the whole response must be read by
+	 * @throws SocketTimeoutException if the deadline has passed
+	 */
+	private static void checkDeadline(long deadline) throws SocketTimeoutException {
+		if (System.currentTimeMillis() > deadline) {
+			throw new SocketTimeoutException("Response took too long");
+		}
+	}
+
+	/**
+	 * Reads one line of the response head from @param input, without the line
+	 * ending
+	 *
+	 * @param input    the input of a socket connection
+	 * @param deadline time the whole response must be read by
+	 * @return the line, or null if the input is at its end
+	 * @throws IOException if the line is too long or too slow
+	 */
+	private static String readLine(InputStream input, long deadline) throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+
+		int b;
+		while ((b = input.read()) != -1 && b != '\n') {
+			if (line.size() >= MAX_LINE) {
+				throw new IOException("Response line is too long");
+			}
+			line.write(b);
+		}
+		checkDeadline(deadline);
+
+		if (b == -1 && line.size() == 0) {
+			return null;
+		}
+
+		byte[] bytes = line.toByteArray();
+		int size = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+		return new String(bytes, 0, size, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Reads at most @param count bytes from @param input into @param body
+	 *
+	 * @param input    the input of a socket connection
+	 * @param body     the body read so far
+	 * @param count    maximum number of bytes to read
+	 * @param deadline time the whole response must be read by
+	 * @return the number of bytes read, which is less than the count if the input
+	 *         ended
+	 * @throws IOException if the response is too slow
+	 */
+	private static int read(InputStream input, Body body, int count, long deadline)
+			throws IOException {
+		byte[] buffer = new byte[8192];
+		int total = 0;
+
+		while (total < count) {
+			int read = input.read(buffer, 0, Math.min(buffer.length, count - total));
+			if (read < 0) {
+				break;
+			}
+			body.write(buffer, 0, read);
+			total += read;
+			checkDeadline(deadline);
+		}
+
+		return total;
+	}
+
+	/**
+	 * Reads a body with chunked transfer encoding from @param input into @param
+	 * body, including the trailer after the last chunk. Reading stops after
+	 * @param limit bytes.
+	 *
+	 * @param input    the input of a socket connection
+	 * @param body     the decoded body
+	 * @param limit    maximum size of the body
+	 * @param deadline time the whole response must be read by
+	 * @return True if the whole body was read, or False if it was cut off
+	 * @throws IOException if the body is not complete
+	 */
+	private static boolean readChunked(InputStream input, Body body, int limit, long deadline)
+			throws IOException {
+		while (true) {
+			String line = readLine(input, deadline);
+			if (line == null) {
+				throw new EOFException("Connection closed inside a chunked body");
+			}
+
+			int extension = line.indexOf(';');
+			long size = Long.parseLong((extension < 0 ? line : line.substring(0, extension)).trim(), 16);
+			if (size == 0) {
+				break;
+			}
+
+			if (body.size() + size > limit) {
+				read(input, body, limit - body.size(), deadline);
+				return false;
+			}
+
+			if (read(input, body, (int) size, deadline) < size) {
+				throw new EOFException("Connection closed inside a chunk");
+			}
+			readLine(input, deadline);
+		}
+
+		String trailer;
+		while ((trailer = readLine(input, deadline)) != null && !trailer.isEmpty()) {
+			// skip the trailer fields
+		}
+
+		return true;
+	}
+
 	/**
 	 * See {@link #fetchURL(URL)} for details.
 	 *
@@ -61,7 +426,9 @@ public class HttpsFetcher {
 
 	/**
 	 * Uses a {@link Socket} to open a connection to the web server associated with
-	 * the provided URL. Supports HTTP and HTTPS connections.
+	 * the provided URL. Supports HTTP and HTTPS connections. Waits at most the
+	 * connect timeout for the connection, and each read on the socket waits at
+	 * most the read timeout.
 	 *
 	 * @param url the url to connect
 	 * @return a socket connection for that url
@@ -78,8 +445,20 @@ public class HttpsFetcher {
 		int defaultPort = https ? 443 : 80;
 		int port = url.getPort() < 0 ? defaultPort : url.getPort();
 
-		return https ? SSLSocketFactory.getDefault().createSocket(host, port)
-				: SocketFactory.getDefault().createSocket(host, port);
+		Socket socket = SocketFactory.getDefault().createSocket();
+		try {
+			socket.connect(new InetSocketAddress(host, port), connectTimeout);
+			socket.setSoTimeout(readTimeout);
+			socket.setTcpNoDelay(true);
+
+			if (https) {
+				return ((SSLSocketFactory) SSLSocketFactory.getDefault()).createSocket(socket, host, port, true);
+			}
+			return socket;
+		} catch (IOException e) {
+			socket.close();
+			throw e;
+		}
 	}
 
 	/**
@@ -139,4 +518,58 @@ public class HttpsFetcher {
 	public static List<String> getContent(BufferedReader response) throws IOException {
 		return response.lines().collect(Collectors.toList());
 	}
+
+	/**
+	 * Body of a response, which is either kept in memory or written on to an
+	 * output as it is read, and counts its bytes either way
+	 */
+	private static class Body extends OutputStream {
+
+		/**
+		 * Bytes of the body if it is kept, or null
+		 */
+		private final ByteArrayOutputStream kept;
+
+		/**
+		 * Receives the bytes of the body
+		 */
+		private final OutputStream output;
+
+		/**
+		 * Number of bytes written
+		 */
+		private int size;
+
+		/**
+		 * Creates a body that writes to @param output, or is kept if it is null
+		 *
+		 * @param output receives the bytes of the body, or null
+		 */
+		private Body(OutputStream output) {
+			this.kept = output == null ? new ByteArrayOutputStream() : null;
+			this.output = output == null ? kept : output;
+			this.size = 0;
+		}
+
+		/**
+		 * Returns the number of bytes written
+		 *
+		 * @return the size of the body so far
+		 */
+		private int size() {
+			return size;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			output.write(b);
+			size++;
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) throws IOException {
+			output.write(bytes, offset, length);
+			size += length;
+		}
+	}
 }
@@ -1,11 +1,10 @@
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
@@ -13,30 +12,54 @@ import java.util.TreeSet;
 /**
  * InvertedIndex Class - Stores Words and the locations of the word in a
  * specific file These results are Stores in a nested Data Structure
- * TreeMap<Word, TreeMap<File, TreeSet<Positions>>>
+ * TreeMap<Word, Term ID> and List<PostingMap<Location ID, PostingList>>. Words
+ * and locations are given int IDs once, and are only turned back into Strings
+ * when they are returned or written out.
  *
  * @author Porfirio Mohabir
  *
  */
-public class InvertedIndex {
+public class InvertedIndex implements WritableInvertedIndex {
 	/**
-	 * Initializes an instance of the InvertedIndex Data Structure
+	 * Maps each word to its term ID, sorted by word
 	 */
-	private final TreeMap<String, TreeMap<String, TreeSet<Integer>>> index;
+	private final TreeMap<String, Integer> terms;
+
+	/**
+	 * Initializes an instance of the InvertedIndex Data Structure, the PostingMap
+	 * of each term ID
+	 */
+	private final ArrayList<PostingMap> index;
 
 	/**
 	 * Initializes an instance of the Locations Data Structure
 	 *
 	 */
-	private final TreeMap<String, Integer> locations;
+	private final DocumentTable locations;
+
+	/**
+	 * Number of times the index was changed
+	 */
+	private long version;
 
 	/**
 	 * Creates Inverted Index, Location, Query Data Structure.
 	 */
 	public InvertedIndex() {
-		index = new TreeMap<>();
-		locations = new TreeMap<>();
+		this(new DocumentTable());
+	}
 
+	/**
+	 * Creates an empty Inverted Index that assigns location IDs and word counts
+	 * in @param locations, which may be shared with other indexes
+	 *
+	 * @param locations - DocumentTable of the index
+	 */
+	InvertedIndex(DocumentTable locations) {
+		terms = new TreeMap<>();
+		index = new ArrayList<>();
+		this.locations = locations;
+		version = 0;
 	}
 
 	/**
@@ -47,24 +70,171 @@ public class InvertedIndex {
 	 * @param file     - File containing the word
 	 * @param position - position of word in file
 	 */
+	@Override
 	public void add(String word, String file, Integer position) {
-		index.putIfAbsent(word, new TreeMap<>());
-		index.get(word).putIfAbsent(file, new TreeSet<>());
+		version++;
+		int location = locations.add(file);
 
-		if (index.get(word).get(file).add(position)) {
-			Integer count = locations.getOrDefault(file, 0);
-			locations.put(file, ++count);
+		if (getPostings(word, true).putIfAbsent(location).add(position)) {
+			locations.addCount(location, 1);
 		}
 	}
 
+	/**
+	 * Returns the PostingMap of @param word
+	 *
+	 * @param word   - Word in Inverted Data Structure
+	 * @param create - True if an empty PostingMap should be added when the word
+	 *               does not exist yet
+	 * @return - PostingMap of the word, or null if it does not exist
+	 */
+	private PostingMap getPostings(String word, boolean create) {
+		Integer term = terms.get(word);
+		if (term != null) {
+			return index.get(term);
+		}
+
+		if (!create) {
+			return null;
+		}
+
+		PostingMap postings = new PostingMap();
+		terms.put(word, index.size());
+		index.add(postings);
+		return postings;
+	}
+
+	/**
+	 * Returns the PostingList of @param word in @param location
+	 *
+	 * @param word     - Word in Inverted Data Structure
+	 * @param location - File containing the word
+	 * @return - PostingList or null if the word is not in the location
+	 */
+	private PostingList getPostings(String word, String location) {
+		PostingMap postings = getPostings(word, false);
+		int id = locations.getId(location);
+		return postings == null || id < 0 ? null : postings.get(id);
+	}
+
+	/**
+	 * Seals every PostingList in the Inverted Index so positions are stored in
+	 * their compact encoded form. Lists are unsealed again if more positions are
+	 * added.
+	 */
+	@Override
+	public void seal() {
+		for (PostingMap postings : index) {
+			postings.seal();
+		}
+	}
+
+	/**
+	 * Adds @param offset to every position in the Inverted Index. Used to move
+	 * the positions of a part of a file after the words before it.
+	 *
+	 * @param offset - amount to add to each position
+	 */
+	void shift(int offset) {
+		version++;
+		for (PostingMap postings : index) {
+			for (int i = 0; i < postings.size(); i++) {
+				postings.getPostings(i).shift(offset);
+			}
+		}
+	}
+
+	/**
+	 * Returns an immutable, read-optimized snapshot of the Inverted Index. Changes
+	 * made to this index afterwards are not seen by the snapshot.
+	 *
+	 * @return - FrozenInvertedIndex with the same words, locations and positions
+	 */
+	@Override
+	public FrozenInvertedIndex freeze() {
+		TreeMap<String, Integer> sorted = new TreeMap<>();
+		for (int id = 0; id < locations.size(); id++) {
+			sorted.put(locations.getLocation(id), id);
+		}
+
+		DocumentTable frozen = new DocumentTable();
+		int[] ids = new int[locations.size()];
+		for (var entry : sorted.entrySet()) {
+			int id = frozen.add(entry.getKey());
+			frozen.addCount(id, locations.getCount(entry.getValue()));
+			ids[entry.getValue()] = id;
+		}
+
+		int postingCount = 0;
+		int positionCount = 0;
+		for (PostingMap postings : index) {
+			postingCount += postings.size();
+			for (int i = 0; i < postings.size(); i++) {
+				positionCount += postings.getPostings(i).size();
+			}
+		}
+
+		String[] words = new String[terms.size()];
+		int[] wordStarts = new int[words.length + 1];
+		int[] postingLocations = new int[postingCount];
+		int[] postingStarts = new int[postingCount + 1];
+		int[] positions = new int[positionCount];
+
+		int word = 0;
+		int posting = 0;
+		int position = 0;
+
+		for (var entry : terms.entrySet()) {
+			PostingMap postings = index.get(entry.getValue());
+
+			long[] order = new long[postings.size()];
+			for (int i = 0; i < order.length; i++) {
+				order[i] = ((long) ids[postings.getLocation(i)] << 32) | i;
+			}
+			Arrays.sort(order);
+
+			words[word] = entry.getKey();
+			wordStarts[word++] = posting;
+
+			for (long next : order) {
+				PostingList list = postings.getPostings((int) next);
+				postingLocations[posting] = (int) (next >>> 32);
+				postingStarts[posting++] = position;
+
+				var iterator = list.iterator();
+				while (iterator.hasNext()) {
+					positions[position++] = iterator.nextInt();
+				}
+			}
+		}
+
+		wordStarts[word] = posting;
+		postingStarts[posting] = position;
+
+		return new FrozenInvertedIndex(words, wordStarts, postingLocations, postingStarts, positions, frozen);
+	}
+
 	/**
 	 * Output InvertedIndex Map Data Structure
 	 *
 	 * @param path - Path to Index Output File
 	 * @throws IOException
 	 */
+	@Override
 	public void toIndexJSON(Path path) throws IOException {
-		PrettyJSONWriter.asNestedNestedObject(index, path);
+		TreeMap<String, TreeMap<String, PostingList>> output = new TreeMap<>();
+
+		for (var entry : terms.entrySet()) {
+			PostingMap postings = index.get(entry.getValue());
+			TreeMap<String, PostingList> files = new TreeMap<>();
+
+			for (int i = 0; i < postings.size(); i++) {
+				files.put(locations.getLocation(postings.getLocation(i)), postings.getPostings(i));
+			}
+			output.put(entry.getKey(), files);
+		}
+
+		PrettyJSONWriter.asNestedNestedObject(output, path);
 	}
 
 	/**
@@ -73,8 +243,9 @@ public class InvertedIndex {
 	 * @param path - Path to Locations Output File
 	 * @throws IOException
 	 */
+	@Override
 	public void toLocationJSON(Path path) throws IOException {
-		PrettyJSONWriter.asObject(locations, path);
+		PrettyJSONWriter.asObject(locations.toMap(), path);
 	}
 
 	/**
@@ -82,8 +253,9 @@ public class InvertedIndex {
 	 *
 	 * @return - Size of Inverted Index Data Structure.
 	 */
+	@Override
 	public int wordCount() {
-		return index == null ? 0 : index.size();
+		return terms.size();
 	}
 
 	/**
@@ -94,9 +266,10 @@ public class InvertedIndex {
 	 *                 to @param word
 	 * @return - number of words
 	 */
+	@Override
 	public int wordCount(String word, String location) {
-		return index.get(word) == null || index.get(word).get(location) == null ? 0
-				: index.get(word).get(location).size();
+		PostingList postings = getPostings(word, location);
+		return postings == null ? 0 : postings.size();
 	}
 
 	/**
@@ -105,8 +278,10 @@ public class InvertedIndex {
 	 * @param location - Key in locations Data Structure
 	 * @return - Number of words
 	 */
+	@Override
 	public int wordCount(String location) {
-		return locations.get(location) == null ? 0 : locations.get(location);
+		int id = locations.getId(location);
+		return id < 0 ? 0 : locations.getCount(id);
 	}
 
 	/**
@@ -115,8 +290,10 @@ public class InvertedIndex {
 	 * @param word - Key in Inverted Index Data Structure
 	 * @return - return the size of the Nested Inverted Index Data Structure size
 	 */
+	@Override
 	public int locationCount(String word) {
-		return index.get(word) == null ? 0 : index.get(word).size();
+		PostingMap postings = getPostings(word, false);
+		return postings == null ? 0 : postings.size();
 	}
 
 	/**
@@ -124,8 +301,9 @@ public class InvertedIndex {
 	 *
 	 * @return - Size of Locations Data Structure
 	 */
+	@Override
 	public int locationCount() {
-		return locations == null ? 0 : locations.size();
+		return locations.size();
 	}
 
 	/**
@@ -134,8 +312,9 @@ public class InvertedIndex {
 	 * @param word - Key in Inverted Index Data Structure
 	 * @return - True or False
 	 */
+	@Override
 	public boolean containsWord(String word) {
-		return index.containsKey(word);
+		return terms.containsKey(word);
 	}
 
 	/**
@@ -145,8 +324,9 @@ public class InvertedIndex {
 	 *
 	 * @return - True or False
 	 */
+	@Override
 	public boolean containsLocation(String location) {
-		return locations.containsKey(location);
+		return locations.getId(location) >= 0;
 	}
 
 	/**
@@ -157,8 +337,9 @@ public class InvertedIndex {
 	 *                 to @param word
 	 * @return - True or False
 	 */
+	@Override
 	public boolean containsLocation(String word, String location) {
-		return index.get(word) == null ? false : index.get(word).containsKey(location);
+		return getPostings(word, location) != null;
 	}
 
 	/**
@@ -170,9 +351,10 @@ public class InvertedIndex {
 	 *                 then mapped to @param word
 	 * @return True or False.
 	 */
+	@Override
 	public boolean containsPosition(String word, String location, Integer position) {
-		return index.get(word) == null || index.get(word).get(location) == null ? false
-				: index.get(word).get(location).contains(position);
+		PostingList postings = getPostings(word, location);
+		return postings == null ? false : postings.contains(position);
 	}
 
 	/**
@@ -180,8 +362,9 @@ public class InvertedIndex {
 	 *
 	 * @return - Unmodifiable Set of Keys in the Inverted Index Data Structure.
 	 */
+	@Override
 	public Set<String> getWords() {
-		return Collections.unmodifiableSet(index.keySet());
+		return Collections.unmodifiableSet(terms.keySet());
 	}
 
 	/**
@@ -192,113 +375,204 @@ public class InvertedIndex {
 	 * @return - Unmodifiable Set of Keys mapped to @param word in the Nested
 	 *         Inverted Index Data Structure.
 	 */
+	@Override
 	public Set<String> getLocations(String word) {
-		if (containsWord(word)) {
-			return Collections.unmodifiableSet(index.get(word).keySet());
+		PostingMap postings = getPostings(word, false);
+		if (postings != null) {
+			TreeSet<String> files = new TreeSet<>();
+			for (int i = 0; i < postings.size(); i++) {
+				files.add(locations.getLocation(postings.getLocation(i)));
+			}
+			return Collections.unmodifiableSet(files);
 		}
 
 		return Collections.emptySet();
 	}
 
+	@Override
+	public long version() {
+		return version;
+	}
+
 	/**
-	 * Returns a A list that calls either either Partial or Exact (Depending of
-	 * value of @param exact)
+	 * Adds the number of matches of the term @param query in each location to
+	 * the @param accumulator
 	 *
-	 * @param queries - the QueryLine
-	 * @param exact   - Boolean flag that determine if the Exact Flag Exist
-	 * @return - A list that calls either either Partial or Exact (Depending of
-	 *         value of @param exact)
+	 * @param accumulator - ScoreAccumulator of the current search
+	 * @param query       - term ID of a query from a Query Line
 	 */
-	public List<Result> search(Collection<String> queries, boolean exact) {
-		return exact ? exactSearch(queries) : partialSearch(queries);
+	private void advancedSearch(ScoreAccumulator accumulator, int query) {
+		PostingMap postings = index.get(query);
+		for (int i = 0; i < postings.size(); i++) {
+			accumulator.add(postings.getLocation(i), postings.getPostings(i).size());
+		}
 	}
 
 	/**
-	 * Function uses @param lookup to help update the score and count in each
-	 * result.
+	 * Adds the matches of @param query to the @param accumulator without creating
+	 * any Results, so the matches of several indexes that share one DocumentTable
+	 * can be added up before the Results are created.
 	 *
-	 * @param lookup  - Map to help keep results at a location updated
-	 * @param results - List of Results
-	 * @param query   - A query from a Query Line
-	 */
-	private void advancedSearch(Map<String, Result> lookup, List<Result> results, String query) {
-		for (String loc : index.get(query).keySet()) {
-			if (lookup.containsKey(loc)) {
-				lookup.get(loc).addMatches(index.get(query).get(loc).size());
+	 * @param accumulator - ScoreAccumulator of the current search
+	 * @param query       - a query from a Query Line
+	 * @param exact       - True for exact matches, False for partial matches
+	 */
+	void accumulate(ScoreAccumulator accumulator, String query, boolean exact) {
+		if (exact) {
+			Integer term = terms.get(query);
+			if (term != null) {
+				advancedSearch(accumulator, term);
+			}
+			return;
+		}
+
+		for (var entry : terms.tailMap(query).entrySet()) {
+			if (entry.getKey().startsWith(query)) {
+				advancedSearch(accumulator, entry.getValue());
 			} else {
-				Result result = new Result(loc, index.get(query).get(loc).size(), locations.get(loc));
-				results.add(result);
-				lookup.put(loc, result);
+				break;
 			}
 		}
 	}
 
 	/**
-	 * Function Finds Exact Matches using Inverted Index Data Structure, creates a
-	 * sorted list of Results.
+	 * Function Finds Exact Matches using Inverted Index Data Structure, and
+	 * returns the best @param limit of them as a sorted list of Results.
 	 *
 	 * @param queries - Collection of Queries
+	 * @param limit   - maximum number of Results, or 0 for all of them
 	 * @return a List of sorted Results
 	 */
-	public List<Result> exactSearch(Collection<String> queries) {
-		List<Result> results = new ArrayList<>();
-		Map<String, Result> lookup = new HashMap<>();
-
-		for (String query : queries) {
-			if (index.containsKey(query)) {
-				advancedSearch(lookup, results, query);
+	@Override
+	public List<Result> exactSearch(Collection<String> queries, int limit) {
+		ScoreAccumulator accumulator = ScoreAccumulator.get();
+		try {
+			for (String query : queries) {
+				accumulate(accumulator, query, true);
 			}
+			return accumulator.getResults(locations, limit);
+		} finally {
+			accumulator.clear();
 		}
-		Collections.sort(results);
-		return results;
 	}
 
 	/**
-	 * Function Finds Partial Matches using Inverted Index Data Structure, creates a
-	 * sorted list of Results.
+	 * Function Finds Partial Matches using Inverted Index Data Structure, and
+	 * returns the best @param limit of them as a sorted list of Results.
 	 *
 	 * @param queries - Collection of Queries
+	 * @param limit   - maximum number of Results, or 0 for all of them
 	 * @return a List of sorted Results
 	 */
-	public List<Result> partialSearch(Collection<String> queries) {
-		List<Result> results = new ArrayList<>();
-		Map<String, Result> lookup = new HashMap<>();
-
-		for (String query : queries) {
-			for (String key : index.tailMap(query).keySet()) {
-				if (key.startsWith(query)) {
-					advancedSearch(lookup, results, key);
-				} else {
-					break;
-				}
+	@Override
+	public List<Result> partialSearch(Collection<String> queries, int limit) {
+		ScoreAccumulator accumulator = ScoreAccumulator.get();
+		try {
+			for (String query : queries) {
+				accumulate(accumulator, query, false);
 			}
+			return accumulator.getResults(locations, limit);
+		} finally {
+			accumulator.clear();
 		}
-		Collections.sort(results);
-		return results;
 	}
 
 	/**
-	 * Adds All Data to InvertedIndex Data Structure
+	 * Adds All Data to InvertedIndex Data Structure. The positions are added
+	 * before the word counts, so a location is only counted once its words are
+	 * there.
 	 *
 	 * @param other - InvertedIndex Data Structure
 	 */
+	@Override
 	public void addAll(InvertedIndex other) {
-		for (String word : other.index.keySet()) {
-			if (!this.index.containsKey(word)) {
-				this.index.put(word, other.index.get(word));
-			} else {
-				for (String file : other.index.get(word).keySet()) {
-					if (!this.index.get(word).containsKey(file)) {
-						this.index.get(word).put(file, other.index.get(word).get(file));
-					} else {
-						this.index.get(word).get(file).addAll(other.index.get(word).get(file));
-					}
+		int[] ids = addLocations(locations, other);
+		addPostings(other, ids, 0, 1);
+		addCounts(locations, other, ids);
+	}
+
+	/**
+	 * Adds the locations of @param other to @param locations, without their word
+	 * counts
+	 *
+	 * @param locations - DocumentTable to add to
+	 * @param other     - InvertedIndex Data Structure
+	 * @return - ID in @param locations of each location ID of @param other
+	 */
+	static int[] addLocations(DocumentTable locations, InvertedIndex other) {
+		int[] ids = new int[other.locations.size()];
+		for (int id = 0; id < ids.length; id++) {
+			ids[id] = locations.add(other.locations.getLocation(id));
+		}
+		return ids;
+	}
+
+	/**
+	 * Adds the word counts of the locations of @param other to @param locations
+	 *
+	 * @param locations - DocumentTable to add to
+	 * @param other     - InvertedIndex Data Structure
+	 * @param ids       - ID in @param locations of each location ID of @param
+	 *                  other
+	 */
+	static void addCounts(DocumentTable locations, InvertedIndex other, int[] ids) {
+		for (int id = 0; id < ids.length; id++) {
+			locations.addCount(ids[id], other.locations.getCount(id));
+		}
+	}
+
+	/**
+	 * Adds the positions of the words of @param other that belong to @param stripe
+	 * out of @param stripes, without adding word counts. The PostingLists of
+	 * @param other are copied, so it can still be changed afterwards, and sealed
+	 * lists are copied without decoding them.
+	 *
+	 * @param other   - InvertedIndex Data Structure
+	 * @param ids     - ID in this index of each location ID of @param other
+	 * @param stripe  - stripe of the words to add
+	 * @param stripes - number of stripes, or 1 to add every word
+	 */
+	void addPostings(InvertedIndex other, int[] ids, int stripe, int stripes) {
+		version++;
+
+		for (var entry : other.terms.entrySet()) {
+			if (stripes > 1 && getStripe(entry.getKey(), stripes) != stripe) {
+				continue;
+			}
+
+			PostingMap theirs = other.index.get(entry.getValue());
+			PostingMap mine = this.getPostings(entry.getKey(), true);
+
+			for (int i = 0; i < theirs.size(); i++) {
+				int id = ids[theirs.getLocation(i)];
+				PostingList positions = mine.get(id);
+
+				if (positions == null) {
+					mine.put(id, new PostingList(theirs.getPostings(i)));
+				} else {
+					positions.addAll(theirs.getPostings(i));
 				}
 			}
 		}
-		for (String location : other.locations.keySet()) {
-			int value = locations.getOrDefault(location, 0);
-			locations.put(location, value + other.locations.get(location));
-		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Returns the location IDs and word counts of the index
+	 *
+	 * @return - DocumentTable of the index
+	 */
+	DocumentTable getLocationTable() {
+		return locations;
+	}
+
+	/**
+	 * Returns the stripe of @param word out of @param stripes
+	 *
+	 * @param word    - Word in Inverted Data Structure
+	 * @param stripes - number of stripes
+	 * @return - stripe from 0 to @param stripes - 1
+	 */
+	static int getStripe(String word, int stripes) {
+		return Math.floorMod(word.hashCode(), stripes);
+	}
+}
@@ -1,6 +1,4 @@
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.FileVisitOption;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -9,7 +7,6 @@ import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-import opennlp.tools.stemmer.Stemmer;
 import opennlp.tools.stemmer.snowball.SnowballStemmer;
 
 /**
@@ -24,7 +21,7 @@ public class InvertedIndexBuilder {
 	 * Creates Inverted Index and Locations Data Structures.
 	 */
 
-	private final InvertedIndex index;
+	private final WritableInvertedIndex index;
 
 	/**
 	 * The default stemmer algorithm used by this class.
@@ -47,9 +44,9 @@ public class InvertedIndexBuilder {
 	/**
 	 * New Instance of InvertedIndex
 	 *
-	 * @param index - Type InvertedIndex.
+	 * @param index - Type WritableInvertedIndex.
 	 */
-	public InvertedIndexBuilder(InvertedIndex index) {
+	public InvertedIndexBuilder(WritableInvertedIndex index) {
 		this.index = index;
 	}
 
@@ -80,27 +77,43 @@ public class InvertedIndexBuilder {
 
 	/**
 	 * Stems each each word in the file and adds to Inverted Index Data Structure.
+	 * The words are read straight from the UTF-8 bytes of the file.
 	 *
 	 * @param path  - Path to -path flag value
 	 * @param index - InvertedIndex Data Structure
 	 * @throws IOException
+	 *
+	 * @see Utf8Tokenizer
 	 */
-	public static void stemFile(Path path, InvertedIndex index) throws IOException {
-		Stemmer stemmer = new SnowballStemmer(DEFAULT);
+	public static void stemFile(Path path, WritableInvertedIndex index) throws IOException {
+		stemFile(path, 0, Long.MAX_VALUE, index);
+	}
 
-		try (BufferedReader read = Files.newBufferedReader(path, StandardCharsets.UTF_8);) {
-			String line;
-			int position = 0;
-			String pathString = path.toString();
-			while ((line = read.readLine()) != null) {
-				String[] parsedLine = TextParser.parse(line);
-				for (int i = 0; i < parsedLine.length; i++) {
-					CharSequence stem = stemmer.stem(parsedLine[i]);
-					index.add(stem.toString(), pathString, position + 1);
-					position++;
-				}
-			}
-		}
+	/**
+	 * Stems each word in the lines of the file from byte @param start to byte
+	 * @param end and adds to Inverted Index Data Structure. Positions start at 1
+	 * at @param start.
+	 *
+	 * @param path  - Path to -path flag value
+	 * @param start - first byte of a line
+	 * @param end   - end of the bytes, at the end of a line or past the end of the
+	 *              file
+	 * @param index - InvertedIndex Data Structure
+	 * @return - number of words added
+	 * @throws IOException
+	 *
+	 * @see Utf8Tokenizer#lineStart(java.nio.channels.FileChannel, long)
+	 */
+	public static int stemFile(Path path, long start, long end, WritableInvertedIndex index) throws IOException {
+		StemCache stemmer = StemCache.get();
+
+		int[] position = { 0 };
+		String pathString = path.toString();
+		Utf8Tokenizer.get().tokenize(path, start, end, (chars, length) -> {
+			index.add(stemmer.stem(chars, length), pathString, position[0] + 1);
+			position[0]++;
+		});
+		return position[0];
 	}
 
 	/**
@@ -0,0 +1,207 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An Interface that contains all the read-only functions of an Inverted Index
+ * Data Structure. QueryBuilderInterface implementations search through this
+ * interface, so they can run against a mutable InvertedIndex or a frozen
+ * snapshot of one.
+ *
+ * @author Porfirio Mohabir
+ *
+ */
+public interface InvertedIndexInterface {
+
+	/**
+	 * Output InvertedIndex Map Data Structure
+	 *
+	 * @param path - Path to Index Output File
+	 * @throws IOException
+	 */
+	public void toIndexJSON(Path path) throws IOException;
+
+	/**
+	 * Output Location Map Data Structure
+	 *
+	 * @param path - Path to Locations Output File
+	 * @throws IOException
+	 */
+	public void toLocationJSON(Path path) throws IOException;
+
+	/**
+	 * Method return (int) numbers of Word in Inverted Index Data Structure
+	 *
+	 * @return - Size of Inverted Index Data Structure.
+	 */
+	public int wordCount();
+
+	/**
+	 * returns the number times the @param word appear in the @param location
+	 *
+	 * @param word     - Key in Inverted Index Map
+	 * @param location - Key in nested Inverted Index Data Structure mapped
+	 *                 to @param word
+	 * @return - number of words
+	 */
+	public int wordCount(String word, String location);
+
+	/**
+	 * return the word count for a specific @param location
+	 *
+	 * @param location - Key in locations Data Structure
+	 * @return - Number of words
+	 */
+	public int wordCount(String location);
+
+	/**
+	 * return the number of files mapped to the @param word
+	 *
+	 * @param word - Key in Inverted Index Data Structure
+	 * @return - return the size of the Nested Inverted Index Data Structure size
+	 */
+	public int locationCount(String word);
+
+	/**
+	 * return the number of locations in the Locations Data Structure
+	 *
+	 * @return - Size of Locations Data Structure
+	 */
+	public int locationCount();
+
+	/**
+	 * Return True if the @param word exist in the Inverted Index Data Structure
+	 *
+	 * @param word - Key in Inverted Index Data Structure
+	 * @return - True or False
+	 */
+	public boolean containsWord(String word);
+
+	/**
+	 * Return True if the @param location exist in the Locations Data Structure
+	 *
+	 * @param location - Key in Location Data Structure
+	 *
+	 * @return - True or False
+	 */
+	public boolean containsLocation(String location);
+
+	/**
+	 * Return True is the @param location exist for the @param word
+	 *
+	 * @param word     - Key in Inverted Index Data Structure.
+	 * @param location - Key in nested Inverted Index Data Structure mapped
+	 *                 to @param word
+	 * @return - True or False
+	 */
+	public boolean containsLocation(String word, String location);
+
+	/**
+	 * Return True if the @param position exist in the Inverted Index Data Structure
+	 *
+	 * @param word     - Key in Inverted Index Data Structure
+	 * @param location - Key in nested Inverted Index Data Structure mapped
+	 * @param position - Position of @param word mapped to @param location which is
+	 *                 then mapped to @param word
+	 * @return True or False.
+	 */
+	public boolean containsPosition(String word, String location, Integer position);
+
+	/**
+	 * Return the Set of all Words in Inverted Index Data Structure
+	 *
+	 * @return - Unmodifiable Set of Keys in the Inverted Index Data Structure.
+	 */
+	public Set<String> getWords();
+
+	/**
+	 * Return the Set of all files mapped to @param word in Nested Inverted Index
+	 * Data Structure
+	 *
+	 * @param word - Key in Inverted Index Data Structure.
+	 * @return - Unmodifiable Set of Keys mapped to @param word in the Nested
+	 *         Inverted Index Data Structure.
+	 */
+	public Set<String> getLocations(String word);
+
+	/**
+	 * Returns a number that changes every time words or locations are added to
+	 * the index, so cached searches can tell when they are out of date. An index
+	 * that cannot change always returns 0.
+	 *
+	 * @return - version of the index
+	 */
+	public default long version() {
+		return 0;
+	}
+
+	/**
+	 * Returns a A list that calls either either Partial or Exact (Depending of
+	 * value of @param exact)
+	 *
+	 * @param queries - the QueryLine
+	 * @param exact   - Boolean flag that determine if the Exact Flag Exist
+	 * @return - A list that calls either either Partial or Exact (Depending of
+	 *         value of @param exact)
+	 */
+	public default List<Result> search(Collection<String> queries, boolean exact) {
+		return search(queries, exact, 0);
+	}
+
+	/**
+	 * Returns the best @param limit Results of either a Partial or Exact search
+	 * (Depending of value of @param exact)
+	 *
+	 * @param queries - the QueryLine
+	 * @param exact   - Boolean flag that determine if the Exact Flag Exist
+	 * @param limit   - maximum number of Results, or 0 for all of them
+	 * @return - A sorted list of at most @param limit Results
+	 */
+	public default List<Result> search(Collection<String> queries, boolean exact, int limit) {
+		return exact ? exactSearch(queries, limit) : partialSearch(queries, limit);
+	}
+
+	/**
+	 * Function Finds Exact Matches using Inverted Index Data Structure, creates a
+	 * sorted list of Results.
+	 *
+	 * @param queries - Collection of Queries
+	 * @return a List of sorted Results
+	 */
+	public default List<Result> exactSearch(Collection<String> queries) {
+		return exactSearch(queries, 0);
+	}
+
+	/**
+	 * Function Finds Exact Matches using Inverted Index Data Structure, and
+	 * returns the best @param limit of them as a sorted list of Results.
+	 *
+	 * @param queries - Collection of Queries
+	 * @param limit   - maximum number of Results, or 0 for all of them
+	 * @return a List of sorted Results
+	 */
+	public List<Result> exactSearch(Collection<String> queries, int limit);
+
+	/**
+	 * Function Finds Partial Matches using Inverted Index Data Structure, creates a
+	 * sorted list of Results.
+	 *
+	 * @param queries - Collection of Queries
+	 * @return a List of sorted Results
+	 */
+	public default List<Result> partialSearch(Collection<String> queries) {
+		return partialSearch(queries, 0);
+	}
+
+	/**
+	 * Function Finds Partial Matches using Inverted Index Data Structure, and
+	 * returns the best @param limit of them as a sorted list of Results.
+	 *
+	 * @param queries - Collection of Queries
+	 * @param limit   - maximum number of Results, or 0 for all of them
+	 * @return a List of sorted Results
+	 */
+	public List<Result> partialSearch(Collection<String> queries, int limit);
+}
@@ -0,0 +1,673 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * A read-only Inverted Index that searches a binary index file written by
+ * FrozenInvertedIndex.toBinary(Path). The file is opened through a FileChannel
+ * and memory-mapped, so opening it does not read the words or postings, and
+ * they stay off the Java heap. Only the locations table is decoded when the
+ * file is opened. Each section is mapped in windows of at most 1 GB, so
+ * sections and offsets can be larger than 2 GB. Words are found by comparing
+ * their UTF-8 bytes in the mapped dictionary, so a lookup decodes no Strings.
+ *
+ * The file has four sections, and all numbers are big-endian:
+ *
+ * <pre>
+ * header:     magic, version, word count, location count (ints), then the
+ *             offsets of the locations, dictionary and postings sections (longs)
+ * locations:  for each location ID in order: word count, length, UTF-8 bytes
+ * dictionary: the offset of each entry in the section (longs, or ints in
+ *             version 1 files), then for each word in sorted order: postings
+ *             offset (long), number of locations, length, UTF-8 bytes
+ * postings:   for each location of a word: location ID delta, number of
+ *             positions and size in bytes of the positions (varints), then the
+ *             position deltas (varints)
+ * </pre>
+ *
+ * @author Porfirio Mohabir
+ *
+ */
+public class MappedInvertedIndex implements InvertedIndexInterface {
+
+	/**
+	 * First int of every index file
+	 */
+	static final int MAGIC = 0x53494458;
+
+	/**
+	 * Version of the file format
+	 */
+	static final int VERSION = 2;
+
+	/**
+	 * Size of the header in bytes
+	 */
+	static final int HEADER_SIZE = 40;
+
+	/**
+	 * Number of bits of the offset in a window, so windows are 1 GB
+	 */
+	private static final int WINDOW_BITS = 30;
+
+	/**
+	 * Number of bytes of the next window that are also mapped in each window, so
+	 * a long that starts in a window can be read from it
+	 */
+	private static final int WINDOW_OVERLAP = 8;
+
+	/**
+	 * Number of words in the file
+	 */
+	private final int words;
+
+	/**
+	 * Size in bytes of the offset of each dictionary entry
+	 */
+	private final int entrySize;
+
+	/**
+	 * Mapped dictionary section
+	 */
+	private final Section dictionary;
+
+	/**
+	 * Mapped postings section
+	 */
+	private final Section postings;
+
+	/**
+	 * Location IDs and word counts
+	 */
+	private final DocumentTable locations;
+
+	/**
+	 * Opens and memory-maps the index file at @param path
+	 *
+	 * @param path - Path to a binary index file
+	 * @throws IOException if the file cannot be read or is not an index file
+	 */
+	public MappedInvertedIndex(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_SIZE) {
+				throw new IOException("Not an index file: " + path);
+			}
+
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+			if (header.getInt(0) != MAGIC || header.getInt(4) < 1 || header.getInt(4) > VERSION) {
+				throw new IOException("Not an index file: " + path);
+			}
+
+			entrySize = header.getInt(4) == 1 ? 4 : 8;
+			words = header.getInt(8);
+			int count = header.getInt(12);
+			long locationsOffset = header.getLong(16);
+			long dictionaryOffset = header.getLong(24);
+			long postingsOffset = header.getLong(32);
+
+			Section table = new Section(channel, locationsOffset, dictionaryOffset);
+			dictionary = new Section(channel, dictionaryOffset, postingsOffset);
+			postings = new Section(channel, postingsOffset, channel.size());
+
+			locations = new DocumentTable();
+			long offset = 0;
+			for (int i = 0; i < count; i++) {
+				int wordCount = table.getInt(offset);
+				int length = table.getInt(offset + 4);
+				int id = locations.add(getString(table, offset + 8, length));
+				locations.addCount(id, wordCount);
+				offset += 8 + length;
+			}
+		}
+	}
+
+	/**
+	 * Decodes @param length UTF-8 bytes at @param offset of @param section
+	 *
+	 * @param section - section to read from
+	 * @param offset  - offset of the first byte
+	 * @param length  - number of bytes
+	 * @return - decoded String
+	 */
+	private static String getString(Section section, long offset, int length) {
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = section.get(offset + i);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns the offset of the dictionary entry of the word at @param index
+	 *
+	 * @param index - index of a word in sorted order
+	 * @return - offset in the dictionary section
+	 */
+	private long getEntry(int index) {
+		long offset = (long) entrySize * index;
+		return entrySize == 4 ? dictionary.getInt(offset) : dictionary.getLong(offset);
+	}
+
+	/**
+	 * Returns the word at @param index
+	 *
+	 * @param index - index of a word in sorted order
+	 * @return - the word
+	 */
+	private String getWord(int index) {
+		long entry = getEntry(index);
+		return getString(dictionary, entry + 16, dictionary.getInt(entry + 12));
+	}
+
+	/**
+	 * Compares the word at @param index with the UTF-8 bytes @param key in the
+	 * order of String.compareTo(), without decoding the word. If @param prefix is
+	 * True, a word that starts with the key compares as equal.
+	 *
+	 * @param index  - index of a word in sorted order
+	 * @param key    - UTF-8 bytes of a word or prefix
+	 * @param prefix - True to compare only the first bytes of the word
+	 * @return - negative, zero or positive like String.compareTo()
+	 */
+	private int compareWord(int index, byte[] key, boolean prefix) {
+		long entry = getEntry(index);
+		int length = dictionary.getInt(entry + 12);
+		long offset = entry + 16;
+
+		int shared = Math.min(length, key.length);
+		for (int i = 0; i < shared; i++) {
+			int a = dictionary.get(offset + i) & 0xFF;
+			int b = key[i] & 0xFF;
+			if (a != b) {
+				return utf16Order(a) - utf16Order(b);
+			}
+		}
+		return prefix && length >= key.length ? 0 : length - key.length;
+	}
+
+	/**
+	 * Returns a key for the UTF-8 byte @param b, so that bytes compare in the
+	 * order of the UTF-16 characters the words are sorted by. The only difference
+	 * between the two orders is that the characters from U+E000 to U+FFFF sort
+	 * after the surrogate pairs in UTF-16, so their lead bytes are moved after the
+	 * lead bytes of four byte sequences. Two valid words always first differ at
+	 * the same kind of byte, so continuation bytes are never compared with lead
+	 * bytes.
+	 *
+	 * @param b - unsigned byte of a word
+	 * @return - key of the byte
+	 */
+	private static int utf16Order(int b) {
+		return b == 0xEE || b == 0xEF ? b + 0x10 : b;
+	}
+
+	/**
+	 * Returns the UTF-8 bytes of @param word
+	 *
+	 * @param word - word to encode
+	 * @return - UTF-8 bytes
+	 */
+	private static byte[] getBytes(String word) {
+		return word.getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns the index of @param word, or a negative number (-(insertion point)
+	 * - 1) if it does not exist
+	 *
+	 * @param word - word to find
+	 * @return - index of the word or a negative number
+	 */
+	private int findWord(String word) {
+		return findWord(getBytes(word));
+	}
+
+	/**
+	 * Returns the index of the word with the UTF-8 bytes @param key, or a negative
+	 * number (-(insertion point) - 1) if it does not exist
+	 *
+	 * @param key - UTF-8 bytes of the word to find
+	 * @return - index of the word or a negative number
+	 */
+	private int findWord(byte[] key) {
+		int low = 0;
+		int high = words - 1;
+
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int compare = compareWord(middle, key, false);
+
+			if (compare < 0) {
+				low = middle + 1;
+			} else if (compare > 0) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -(low + 1);
+	}
+
+	/**
+	 * Returns the index after the last word that starts with the UTF-8 bytes
+	 * @param prefix
+	 *
+	 * @param prefix - UTF-8 bytes of the prefix to find
+	 * @return - end of the prefix range
+	 */
+	private int prefixEnd(byte[] prefix) {
+		int low = 0;
+		int high = words;
+
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+
+			if (compareWord(middle, prefix, true) <= 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Returns a Reader at the postings of the word at @param index
+	 *
+	 * @param index - index of a word in sorted order
+	 * @return - Reader of the postings
+	 */
+	private Reader getPostings(int index) {
+		long entry = getEntry(index);
+		return new Reader(dictionary.getLong(entry), dictionary.getInt(entry + 8));
+	}
+
+	/**
+	 * Returns a Reader at the posting of @param word in @param location, or null
+	 * if there is none
+	 *
+	 * @param word     - word to find
+	 * @param location - location to find
+	 * @return - Reader of the posting or null
+	 */
+	private Reader findPosting(String word, String location) {
+		int index = findWord(word);
+		int id = locations.getId(location);
+
+		if (index < 0 || id < 0) {
+			return null;
+		}
+
+		Reader reader = getPostings(index);
+		while (reader.next()) {
+			if (reader.location >= id) {
+				return reader.location == id ? reader : null;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public void toIndexJSON(Path path) throws IOException {
+		TreeMap<String, TreeMap<String, Iterable<Integer>>> output = new TreeMap<>();
+
+		for (int i = 0; i < words; i++) {
+			TreeMap<String, Iterable<Integer>> files = new TreeMap<>();
+
+			Reader reader = getPostings(i);
+			while (reader.next()) {
+				int[] positions = reader.getPositions();
+				files.put(locations.getLocation(reader.location), () -> Arrays.stream(positions).iterator());
+			}
+			output.put(getWord(i), files);
+		}
+
+		PrettyJSONWriter.asNestedNestedObject(output, path);
+	}
+
+	/**
+	 * Adds every position of every word in this index to @param index
+	 *
+	 * @param index - InvertedIndex to add the words to
+	 */
+	void addTo(InvertedIndex index) {
+		for (int i = 0; i < words; i++) {
+			String word = getWord(i);
+
+			Reader reader = getPostings(i);
+			while (reader.next()) {
+				String location = locations.getLocation(reader.location);
+				for (int position : reader.getPositions()) {
+					index.add(word, location, position);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void toLocationJSON(Path path) throws IOException {
+		PrettyJSONWriter.asObject(locations.toMap(), path);
+	}
+
+	@Override
+	public int wordCount() {
+		return words;
+	}
+
+	@Override
+	public int wordCount(String word, String location) {
+		Reader reader = findPosting(word, location);
+		return reader == null ? 0 : reader.count;
+	}
+
+	@Override
+	public int wordCount(String location) {
+		int id = locations.getId(location);
+		return id < 0 ? 0 : locations.getCount(id);
+	}
+
+	@Override
+	public int locationCount(String word) {
+		int index = findWord(word);
+		return index < 0 ? 0 : dictionary.getInt(getEntry(index) + 8);
+	}
+
+	@Override
+	public int locationCount() {
+		return locations.size();
+	}
+
+	@Override
+	public boolean containsWord(String word) {
+		return findWord(word) >= 0;
+	}
+
+	@Override
+	public boolean containsLocation(String location) {
+		return locations.getId(location) >= 0;
+	}
+
+	@Override
+	public boolean containsLocation(String word, String location) {
+		return findPosting(word, location) != null;
+	}
+
+	@Override
+	public boolean containsPosition(String word, String location, Integer position) {
+		Reader reader = findPosting(word, location);
+		return reader == null ? false : Arrays.binarySearch(reader.getPositions(), position) >= 0;
+	}
+
+	@Override
+	public Set<String> getWords() {
+		TreeSet<String> set = new TreeSet<>();
+		for (int i = 0; i < words; i++) {
+			set.add(getWord(i));
+		}
+		return Collections.unmodifiableSet(set);
+	}
+
+	@Override
+	public Set<String> getLocations(String word) {
+		int index = findWord(word);
+		if (index < 0) {
+			return Collections.emptySet();
+		}
+
+		TreeSet<String> files = new TreeSet<>();
+		Reader reader = getPostings(index);
+		while (reader.next()) {
+			files.add(locations.getLocation(reader.location));
+		}
+		return Collections.unmodifiableSet(files);
+	}
+
+	/**
+	 * Adds the number of matches of the word at @param index in each location to
+	 * the @param accumulator
+	 *
+	 * @param accumulator - ScoreAccumulator of the current search
+	 * @param index       - index of a word in sorted order
+	 */
+	private void advancedSearch(ScoreAccumulator accumulator, int index) {
+		Reader reader = getPostings(index);
+		while (reader.next()) {
+			accumulator.add(reader.location, reader.count);
+		}
+	}
+
+	@Override
+	public List<Result> exactSearch(Collection<String> queries, int limit) {
+		ScoreAccumulator accumulator = ScoreAccumulator.get();
+		try {
+			for (String query : queries) {
+				int index = findWord(query);
+				if (index >= 0) {
+					advancedSearch(accumulator, index);
+				}
+			}
+			return accumulator.getResults(locations, limit);
+		} finally {
+			accumulator.clear();
+		}
+	}
+
+	@Override
+	public List<Result> partialSearch(Collection<String> queries, int limit) {
+		ScoreAccumulator accumulator = ScoreAccumulator.get();
+		try {
+			for (String query : queries) {
+				byte[] key = getBytes(query);
+				int index = findWord(key);
+				if (index < 0) {
+					index = -(index + 1);
+				}
+
+				int end = prefixEnd(key);
+				while (index < end) {
+					advancedSearch(accumulator, index++);
+				}
+			}
+			return accumulator.getResults(locations, limit);
+		} finally {
+			accumulator.clear();
+		}
+	}
+
+	/**
+	 * Reads the postings of one word, one location at a time. Only absolute reads
+	 * are used on the shared buffer, so many Readers can be used at once.
+	 */
+	private class Reader {
+
+		/**
+		 * Offset of the next byte to read
+		 */
+		private long offset;
+
+		/**
+		 * Number of postings left to read
+		 */
+		private int remaining;
+
+		/**
+		 * Location ID of the current posting
+		 */
+		private int location;
+
+		/**
+		 * Number of positions in the current posting
+		 */
+		private int count;
+
+		/**
+		 * Offset of the positions of the current posting
+		 */
+		private long start;
+
+		/**
+		 * Creates a Reader at the first posting of a word
+		 *
+		 * @param offset    - offset of the postings of the word
+		 * @param remaining - number of locations of the word
+		 */
+		private Reader(long offset, int remaining) {
+			this.offset = offset;
+			this.remaining = remaining;
+			this.location = 0;
+		}
+
+		/**
+		 * Moves to the next posting
+		 *
+		 * @return - False if there are no more postings
+		 */
+		private boolean next() {
+			if (remaining == 0) {
+				return false;
+			}
+
+			remaining--;
+			location += readVarint();
+			count = readVarint();
+			int length = readVarint();
+			start = offset;
+			offset += length;
+			return true;
+		}
+
+		/**
+		 * Decodes the positions of the current posting
+		 *
+		 * @return - sorted positions
+		 */
+		private int[] getPositions() {
+			long end = offset;
+			offset = start;
+
+			int[] positions = new int[count];
+			int previous = 0;
+			for (int i = 0; i < count; i++) {
+				previous += readVarint();
+				positions[i] = previous;
+			}
+
+			offset = end;
+			return positions;
+		}
+
+		/**
+		 * Reads one varint and moves past it
+		 *
+		 * @return - decoded int
+		 */
+		private int readVarint() {
+			int value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = postings.get(offset++);
+				value |= (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+			return value;
+		}
+	}
+
+	/**
+	 * A section of the index file, mapped in windows of at most 1 GB so it can be
+	 * larger than one ByteBuffer. Every window also maps the first bytes of the
+	 * next one, so a number is always read from the window it starts in. Only
+	 * absolute reads are used, so the section can be read by many threads.
+	 */
+	private static class Section {
+
+		/**
+		 * Mapped windows of the section
+		 */
+		private final ByteBuffer[] windows;
+
+		/**
+		 * Maps the section of the file between @param start and @param end
+		 *
+		 * @param channel - FileChannel of the index file
+		 * @param start   - offset of the first byte of the section
+		 * @param end     - offset after the last byte of the section
+		 * @throws IOException if the section cannot be mapped
+		 */
+		private Section(FileChannel channel, long start, long end) throws IOException {
+			if (start < HEADER_SIZE || end < start || end > channel.size()) {
+				throw new IOException("Index file section cannot be mapped");
+			}
+
+			long size = 1L << WINDOW_BITS;
+			windows = new ByteBuffer[(int) ((end - start + size - 1) >>> WINDOW_BITS)];
+
+			for (int i = 0; i < windows.length; i++) {
+				long offset = start + i * size;
+				long length = Math.min(size + WINDOW_OVERLAP, end - offset);
+				windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+			}
+		}
+
+		/**
+		 * Returns the window that @param offset is in
+		 *
+		 * @param offset - offset in the section
+		 * @return - mapped window
+		 */
+		private ByteBuffer window(long offset) {
+			return windows[(int) (offset >>> WINDOW_BITS)];
+		}
+
+		/**
+		 * Returns the offset of @param offset in its window
+		 *
+		 * @param offset - offset in the section
+		 * @return - offset in the window
+		 */
+		private static int local(long offset) {
+			return (int) (offset & ((1L << WINDOW_BITS) - 1));
+		}
+
+		/**
+		 * Returns the byte at @param offset
+		 *
+		 * @param offset - offset in the section
+		 * @return - the byte
+		 */
+		private byte get(long offset) {
+			return window(offset).get(local(offset));
+		}
+
+		/**
+		 * Returns the int at @param offset
+		 *
+		 * @param offset - offset in the section
+		 * @return - the int
+		 */
+		private int getInt(long offset) {
+			return window(offset).getInt(local(offset));
+		}
+
+		/**
+		 * Returns the long at @param offset
+		 *
+		 * @param offset - offset in the section
+		 * @return - the long
+		 */
+		private long getLong(long offset) {
+			return window(offset).getLong(local(offset));
+		}
+	}
+}
@@ -1,19 +1,42 @@
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A utility class that extends the InvertedindexBuilder Class. This class
  * MultiThreads the InvertedIndexBuilder and allows each worker to parse a file.
  *
+ * Files of at least {@link #SPLIT_SIZE} bytes are split at line breaks into
+ * ranges of about {@link #RANGE_SIZE} bytes, and each range is stemmed by its
+ * own worker with positions that start at 1. The worker that finishes the last
+ * range of a file moves the positions of every range after the words of the
+ * ranges before it, so they are the same as stemming the file in one pass, and
+ * merges the ranges in order before adding them to the index.
+ *
  * @author Porfirio Mohabir
  *
  */
 public class MultiThreadIndexBuilder extends InvertedIndexBuilder {
 
+	/**
+	 * Files of at least this many bytes are split into ranges
+	 */
+	public static final long SPLIT_SIZE = 64L * 1024 * 1024;
+
+	/**
+	 * Size of the ranges of a split file, in bytes
+	 */
+	public static final long RANGE_SIZE = 16L * 1024 * 1024;
+
 	/**
 	 * Inverted Index Data Structure
 	 */
-	private final ThreadSafeInvertedIndex index;
+	private final WritableInvertedIndex index;
 	/**
 	 * Track Pending work
 	 */
@@ -22,10 +45,11 @@ public class MultiThreadIndexBuilder extends InvertedIndexBuilder {
 	/**
 	 * Constructor assigns the index and queue instances
 	 *
-	 * @param index - Inverted Index Data Structure
+	 * @param index - Inverted Index Data Structure that is safe to change from
+	 *              several threads at once
 	 * @param queue - WorkQueue to track pending work
 	 */
-	public MultiThreadIndexBuilder(ThreadSafeInvertedIndex index, WorkQueue queue) {
+	public MultiThreadIndexBuilder(WritableInvertedIndex index, WorkQueue queue) {
 		super(index);
 		this.index = index;
 		this.queue = queue;
@@ -33,7 +57,26 @@ public class MultiThreadIndexBuilder extends InvertedIndexBuilder {
 
 	@Override
 	public void stemFile(Path path) throws IOException {
-		queue.execute(new IndexTask(path));
+		if (Files.size(path) < SPLIT_SIZE) {
+			queue.execute(new IndexTask(path));
+			return;
+		}
+
+		List<Long> bounds = new ArrayList<>();
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			long start = 0;
+			while (start < size) {
+				bounds.add(start);
+				start = Utf8Tokenizer.lineStart(channel, start + RANGE_SIZE);
+			}
+			bounds.add(size);
+		}
+
+		SplitFile file = new SplitFile(path, bounds.size() - 1);
+		for (int i = 0; i < file.ranges.length; i++) {
+			queue.execute(new RangeTask(file, i, bounds.get(i), bounds.get(i + 1)));
+		}
 	}
 
 	@Override
@@ -77,9 +120,156 @@ public class MultiThreadIndexBuilder extends InvertedIndexBuilder {
 				InvertedIndexBuilder.stemFile(file, local);
 			} catch (IOException e) {
 				System.out.println("Cannot Stem File");
+				return;
 			}
+			local.seal();
 			index.addAll(local);
 		}
 	}
 
+	/**
+	 * The ranges of a file that is stemmed by more than one worker
+	 */
+	private class SplitFile {
+		/**
+		 * path to file
+		 */
+		private final Path file;
+
+		/**
+		 * Postings of each range, with positions that start at 1
+		 */
+		private final InvertedIndex[] ranges;
+
+		/**
+		 * Number of words in each range
+		 */
+		private final int[] counts;
+
+		/**
+		 * True for each range that could not be stemmed to its end
+		 */
+		private final boolean[] failed;
+
+		/**
+		 * Number of ranges that are not stemmed yet
+		 */
+		private final AtomicInteger remaining;
+
+		/**
+		 * Constructor
+		 *
+		 * @param file   - Path to file
+		 * @param ranges - number of ranges
+		 */
+		private SplitFile(Path file, int ranges) {
+			this.file = file;
+			this.ranges = new InvertedIndex[ranges];
+			this.counts = new int[ranges];
+			this.failed = new boolean[ranges];
+			this.remaining = new AtomicInteger(ranges);
+		}
+
+		/**
+		 * Stores the postings of range @param range, and merges the file into the
+		 * index if it was the last range
+		 *
+		 * @param range  - number of the range
+		 * @param local  - postings of the range
+		 * @param count  - number of words in the range
+		 * @param failed - True if the range could not be stemmed to its end
+		 */
+		private void finish(int range, InvertedIndex local, int count, boolean failed) {
+			// the atomic decrement makes every stored range visible to the last worker
+			ranges[range] = local;
+			counts[range] = count;
+			this.failed[range] = failed;
+
+			if (remaining.decrementAndGet() == 0) {
+				merge();
+			}
+		}
+
+		/**
+		 * Moves the positions of every range after the words of the ranges before
+		 * it, and adds the ranges to the index in order. Like one pass over the
+		 * file, which checks all of its bytes before it adds a word, nothing is
+		 * added if any range could not be stemmed.
+		 */
+		private void merge() {
+			for (boolean range : failed) {
+				if (range) {
+					return;
+				}
+			}
+
+			InvertedIndex merged = ranges[0];
+			int offset = counts[0];
+
+			for (int i = 1; i < ranges.length; i++) {
+				ranges[i].shift(offset);
+				merged.addAll(ranges[i]);
+				offset += counts[i];
+				ranges[i] = null;
+			}
+
+			merged.seal();
+			index.addAll(merged);
+		}
+	}
+
+	/**
+	 * Stems one range of a SplitFile
+	 */
+	private class RangeTask implements Runnable {
+		/**
+		 * File the range belongs to
+		 */
+		private final SplitFile file;
+
+		/**
+		 * Number of the range
+		 */
+		private final int range;
+
+		/**
+		 * First byte of the range
+		 */
+		private final long start;
+
+		/**
+		 * End of the range
+		 */
+		private final long end;
+
+		/**
+		 * Constructor
+		 *
+		 * @param file  - file the range belongs to
+		 * @param range - number of the range
+		 * @param start - first byte of the range, at the start of a line
+		 * @param end   - end of the range, at the end of a line
+		 */
+		private RangeTask(SplitFile file, int range, long start, long end) {
+			this.file = file;
+			this.range = range;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		public void run() {
+			InvertedIndex local = new InvertedIndex();
+			int count = 0;
+			boolean failed = false;
+			try {
+				count = InvertedIndexBuilder.stemFile(file.file, start, end, local);
+			} catch (IOException e) {
+				System.out.println("Cannot Stem File");
+				failed = true;
+			}
+			file.finish(range, local, count, failed);
+		}
+	}
+
 }
\ No newline at end of file
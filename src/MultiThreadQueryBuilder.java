@@ -5,9 +5,6 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
-import opennlp.tools.stemmer.Stemmer;
-import opennlp.tools.stemmer.snowball.SnowballStemmer;
-
 /**
  * A Utility class that MultiThreads(Search) QueryBuilder Data Structure. Using
  * Inverted Index Data Structure
@@ -16,35 +13,75 @@ import opennlp.tools.stemmer.snowball.SnowballStemmer;
  *
  */
 public class MultiThreadQueryBuilder implements QueryBuilderInterface {
-	/**
-	 * The default stemmer algorithm used by this class.
-	 */
-	private static final SnowballStemmer.ALGORITHM DEFAULT = SnowballStemmer.ALGORITHM.ENGLISH;
-
 	/**
 	 * Track of pending work
 	 */
 	private final WorkQueue queue;
 	/**
-	 * Inverted Index Data Structure
+	 * Inverted Index Data Structure, safe to search from several threads at once
 	 */
-	private final ThreadSafeInvertedIndex index;
+	private final InvertedIndexInterface index;
 
 	/**
 	 * QueryBuilder Data Structure;
 	 */
 	private final TreeMap<String, List<Result>> query;
 
+	/**
+	 * Maximum number of Results kept for each query, or 0 for all of them
+	 */
+	private final int limit;
+
+	/**
+	 * Cache of searches in the index, shared by its other QueryBuilders
+	 */
+	private final QueryCache cache;
+
 	/**
 	 * Constructor Creates index, queue, and query
 	 *
-	 * @param index - Inverted Index Data Structure
+	 * @param index - Inverted Index Data Structure that is safe to search from
+	 *              several threads at once, like a ThreadSafeInvertedIndex or a
+	 *              FrozenInvertedIndex
+	 * @param queue - An object of type WorkQueue that keeps track of pending work
+	 *              of number of workers
+	 */
+	public MultiThreadQueryBuilder(InvertedIndexInterface index, WorkQueue queue) {
+		this(index, queue, 0);
+	}
+
+	/**
+	 * Constructor Creates index, queue, and query that keeps at most @param limit
+	 * Results for each query
+	 *
+	 * @param index - Inverted Index Data Structure that is safe to search from
+	 *              several threads at once, like a ThreadSafeInvertedIndex or a
+	 *              FrozenInvertedIndex
 	 * @param queue - An object of type WorkQueue that keeps track of pending work
 	 *              of number of workers
+	 * @param limit - maximum number of Results for each query, or 0 for all
 	 */
-	public MultiThreadQueryBuilder(ThreadSafeInvertedIndex index, WorkQueue queue) {
+	public MultiThreadQueryBuilder(InvertedIndexInterface index, WorkQueue queue, int limit) {
+		this(index, queue, limit, QueryCache.get(index));
+	}
+
+	/**
+	 * Constructor Creates index, queue, and query that keeps at most @param limit
+	 * Results for each query, and looks up searches in @param cache first
+	 *
+	 * @param index - Inverted Index Data Structure that is safe to search from
+	 *              several threads at once, like a ThreadSafeInvertedIndex or a
+	 *              FrozenInvertedIndex
+	 * @param queue - An object of type WorkQueue that keeps track of pending work
+	 *              of number of workers
+	 * @param limit - maximum number of Results for each query, or 0 for all
+	 * @param cache - QueryCache of the index, which may be shared
+	 */
+	public MultiThreadQueryBuilder(InvertedIndexInterface index, WorkQueue queue, int limit, QueryCache cache) {
 		this.index = index;
 		this.queue = queue;
+		this.limit = limit;
+		this.cache = cache;
 		query = new TreeMap<>();
 	}
 
@@ -101,14 +138,10 @@ public class MultiThreadQueryBuilder implements QueryBuilderInterface {
 
 		@Override
 		public void run() {
-			Stemmer stemmer = new SnowballStemmer(DEFAULT);
+			StemCache stemmer = StemCache.get();
 			TreeSet<String> queries = new TreeSet<>();
-			String[] parsedLine = TextParser.parse(line);
-
-			for (int i = 0; i < parsedLine.length; i++) {
-				CharSequence stem = stemmer.stem(parsedLine[i]);
-				queries.add(stem.toString());
-			}
+			TextTokenizer.get().tokenize(line,
+					(chars, length) -> queries.add(stemmer.stem(chars, length)));
 			String queryLine = String.join(" ", queries);
 
 			synchronized (query) {
@@ -117,7 +150,7 @@ public class MultiThreadQueryBuilder implements QueryBuilderInterface {
 				}
 			}
 
-			List<Result> local = index.search(queries, exact);
+			List<Result> local = cache.search(index, queries, exact, limit);
 
 			synchronized (query) {
 				query.put(queryLine, local);
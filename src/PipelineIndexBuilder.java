@@ -0,0 +1,785 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A utility class that extends the InvertedIndexBuilder Class. Instead of one
+ * worker reading, parsing, stemming and adding each file, the work is split
+ * into four stages that each have their own threads:
+ *
+ * <pre>
+ * read:       reads the files in batches of whole lines
+ * tokenize:   splits the UTF-8 bytes of a batch into words
+ * stem:       stems the words of a batch with the StemCache
+ * accumulate: adds the stems of each file to its postings in order
+ * </pre>
+ *
+ * The stages are connected by bounded queues of batches, so a stage that falls
+ * behind blocks the stages before it instead of filling memory, and reading
+ * overlaps with the work of the other stages. Batches of one file may finish
+ * out of order when a stage has more than one thread, so the accumulator keeps
+ * them until the batches before them were added, and the positions are the
+ * same as stemming the file in one pass. Each file is added to the index once
+ * its last batch was added, unless one of its batches could not be read or
+ * decoded.
+ *
+ * Every stage counts its batches and units of work, and the time its threads
+ * spent working, waiting for input and blocked on a full queue. The stage
+ * whose threads were busy for the largest share of the time is the
+ * bottleneck.
+ *
+ * @author Porfirio Mohabir
+ *
+ */
+public class PipelineIndexBuilder extends InvertedIndexBuilder {
+
+	/**
+	 * Number of bytes read for each batch. A batch may be larger if one line is.
+	 */
+	public static final int BATCH_SIZE = 256 * 1024;
+
+	/**
+	 * Number of batches each queue between two stages can hold
+	 */
+	public static final int QUEUE_SIZE = 8;
+
+	/**
+	 * Marks the end of the input of a stage
+	 */
+	private static final Batch END = new Batch(null, -1);
+
+	/**
+	 * Inverted Index Data Structure
+	 */
+	private final WritableInvertedIndex index;
+
+	/**
+	 * Number of threads of the read, tokenize, stem and accumulate stages
+	 */
+	private final int[] threads;
+
+	/**
+	 * Stages of the last build, or null
+	 */
+	private Stage[] stages;
+
+	/**
+	 * Duration of the last build, in nanoseconds
+	 */
+	private long elapsed;
+
+	/**
+	 * Creates a pipeline with one reader, one tokenizer, two stemmers and one
+	 * accumulator
+	 *
+	 * @param index - Inverted Index Data Structure that is safe to change from
+	 *              several threads at once
+	 */
+	public PipelineIndexBuilder(WritableInvertedIndex index) {
+		this(index, 1, 1, 2, 1);
+	}
+
+	/**
+	 * Creates a pipeline with the given number of threads for each stage
+	 *
+	 * @param index        - Inverted Index Data Structure that is safe to change
+	 *                     from several threads at once
+	 * @param readers      - threads that read files
+	 * @param tokenizers   - threads that split batches into words
+	 * @param stemmers     - threads that stem words
+	 * @param accumulators - threads that add stems to the postings
+	 */
+	public PipelineIndexBuilder(WritableInvertedIndex index, int readers, int tokenizers, int stemmers,
+			int accumulators) {
+		super(index);
+		this.index = index;
+		this.threads = new int[] { Math.max(readers, 1), Math.max(tokenizers, 1), Math.max(stemmers, 1),
+				Math.max(accumulators, 1) };
+	}
+
+	@Override
+	public void stemFile(Path path) throws IOException {
+		build(List.of(path));
+	}
+
+	@Override
+	public void addToInvertIndex(Path path) throws IOException {
+		if (Files.isDirectory(path)) {
+			build(fileFinder(path));
+		} else if (Files.isRegularFile(path)) {
+			build(List.of(path));
+		}
+	}
+
+	/**
+	 * Runs every file of @param files through the stages, and waits until they
+	 * were all added to the index
+	 *
+	 * @param files - paths of text files
+	 */
+	private void build(List<Path> files) {
+		ConcurrentLinkedQueue<Path> pending = new ConcurrentLinkedQueue<>(files);
+		BlockingQueue<Batch> read = new ArrayBlockingQueue<>(QUEUE_SIZE);
+		BlockingQueue<Batch> tokenized = new ArrayBlockingQueue<>(QUEUE_SIZE);
+		BlockingQueue<Batch> stemmed = new ArrayBlockingQueue<>(QUEUE_SIZE);
+
+		Stage accumulator = new AccumulateStage(threads[3], stemmed);
+		Stage stemmer = new StemStage(threads[2], tokenized, stemmed, accumulator);
+		Stage tokenizer = new TokenizeStage(threads[1], read, tokenized, stemmer);
+		Stage reader = new ReadStage(threads[0], pending, read, tokenizer);
+		Stage[] current = { reader, tokenizer, stemmer, accumulator };
+
+		long start = System.nanoTime();
+		List<Worker> workers = new ArrayList<>();
+		for (Stage stage : current) {
+			for (int i = 0; i < stage.threads; i++) {
+				Worker worker = new Worker(stage);
+				workers.add(worker);
+				worker.start();
+			}
+		}
+
+		for (Worker worker : workers) {
+			try {
+				worker.join();
+			} catch (InterruptedException e) {
+				System.err.println("Warning: Pipeline interrupted.");
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+
+		synchronized (this) {
+			stages = current;
+			elapsed = System.nanoTime() - start;
+		}
+	}
+
+	/**
+	 * Returns the metrics of every stage of the last build, one line per stage,
+	 * with the bottleneck marked
+	 *
+	 * @return - metrics of the last build, or an empty String if there was none
+	 */
+	public synchronized String getReport() {
+		if (stages == null) {
+			return "";
+		}
+
+		Stage bottleneck = stages[0];
+		for (Stage stage : stages) {
+			if (stage.getUtilization(elapsed) > bottleneck.getUtilization(elapsed)) {
+				bottleneck = stage;
+			}
+		}
+
+		StringBuilder report = new StringBuilder();
+		report.append(String.format("Pipeline: %.2f s%n", elapsed / 1e9));
+		for (Stage stage : stages) {
+			report.append(String.format(
+					"%-10s %2d threads %8d batches %,14d %-8s %,14.0f %s/s  busy %6.1f%%  starved %8.2f s  blocked %8.2f s%s%n",
+					stage.name, stage.threads, stage.batches.sum(), stage.units.sum(), stage.unit,
+					stage.units.sum() / Math.max(elapsed / 1e9, 1e-9), stage.unit,
+					stage.getUtilization(elapsed) * 100, stage.starved.sum() / 1e9, stage.blocked.sum() / 1e9,
+					stage == bottleneck ? "  <- bottleneck" : ""));
+		}
+		return report.toString();
+	}
+
+	/**
+	 * A batch of lines of one file, as it moves through the stages. Each stage
+	 * replaces the data of the stage before it.
+	 */
+	private static class Batch implements TextTokenizer.Handler {
+
+		/**
+		 * File of the batch
+		 */
+		private final FileState file;
+
+		/**
+		 * Number of the batch in its file, starting at 0
+		 */
+		private final int sequence;
+
+		/**
+		 * True if this is the last batch of the file
+		 */
+		private boolean last;
+
+		/**
+		 * True if the file could not be read or decoded to the end of the batch
+		 */
+		private boolean failed;
+
+		/**
+		 * UTF-8 bytes of the lines, starting at 0
+		 */
+		private byte[] bytes;
+
+		/**
+		 * Number of bytes
+		 */
+		private int length;
+
+		/**
+		 * Characters of the words, one after another
+		 */
+		private char[] chars;
+
+		/**
+		 * End of each word in the characters
+		 */
+		private int[] ends;
+
+		/**
+		 * Number of words
+		 */
+		private int words;
+
+		/**
+		 * Stem of each word
+		 */
+		private String[] stems;
+
+		/**
+		 * Creates an empty batch
+		 *
+		 * @param file     - file of the batch
+		 * @param sequence - number of the batch in its file
+		 */
+		private Batch(FileState file, int sequence) {
+			this.file = file;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public void token(char[] word, int count) {
+			int start = words == 0 ? 0 : ends[words - 1];
+
+			if (start + count > chars.length) {
+				chars = Arrays.copyOf(chars, Math.max(start + count, chars.length * 2));
+			}
+			if (words == ends.length) {
+				ends = Arrays.copyOf(ends, words * 2);
+			}
+
+			System.arraycopy(word, 0, chars, start, count);
+			ends[words++] = start + count;
+		}
+	}
+
+	/**
+	 * Postings of one file while its batches are added
+	 */
+	private static class FileState {
+
+		/**
+		 * Location of the words
+		 */
+		private final String location;
+
+		/**
+		 * Postings of the file
+		 */
+		private final InvertedIndex local;
+
+		/**
+		 * Batches that arrived before the batches in front of them
+		 */
+		private final TreeMap<Integer, Batch> pending;
+
+		/**
+		 * Number of the next batch to add
+		 */
+		private int next;
+
+		/**
+		 * True while a thread is adding the batches of the file
+		 */
+		private boolean draining;
+
+		/**
+		 * Position of the last word added
+		 */
+		private int position;
+
+		/**
+		 * True once a batch failed, so nothing of the file is added
+		 */
+		private boolean failed;
+
+		/**
+		 * Constructor
+		 *
+		 * @param path - path of the file
+		 */
+		private FileState(Path path) {
+			this.location = path.toString();
+			this.local = new InvertedIndex();
+			this.pending = new TreeMap<>();
+			this.next = 0;
+			this.draining = false;
+			this.position = 0;
+			this.failed = false;
+		}
+	}
+
+	/**
+	 * One stage of the pipeline, with the queues around it and its metrics
+	 */
+	private abstract static class Stage {
+
+		/**
+		 * Name of the stage
+		 */
+		private final String name;
+
+		/**
+		 * Number of threads of the stage
+		 */
+		private final int threads;
+
+		/**
+		 * Batches for the stage, or null if it has no input queue
+		 */
+		private final BlockingQueue<Batch> input;
+
+		/**
+		 * Batches for the next stage, or null if it is the last stage
+		 */
+		private final BlockingQueue<Batch> output;
+
+		/**
+		 * Next stage, or null if it is the last stage
+		 */
+		private final Stage next;
+
+		/**
+		 * Name of the units of work
+		 */
+		private final String unit;
+
+		/**
+		 * Number of threads that did not finish yet
+		 */
+		private final AtomicInteger running;
+
+		/**
+		 * Number of batches done
+		 */
+		private final LongAdder batches;
+
+		/**
+		 * Units of work done
+		 */
+		private final LongAdder units;
+
+		/**
+		 * Total time the threads were running, in nanoseconds
+		 */
+		private final LongAdder alive;
+
+		/**
+		 * Time spent waiting for input, in nanoseconds
+		 */
+		private final LongAdder starved;
+
+		/**
+		 * Time spent waiting for room in the output queue, in nanoseconds
+		 */
+		private final LongAdder blocked;
+
+		/**
+		 * Constructor
+		 *
+		 * @param name    - name of the stage
+		 * @param threads - number of threads
+		 * @param input   - batches for the stage, or null
+		 * @param output  - batches for the next stage, or null
+		 * @param next    - next stage, or null
+		 * @param unit    - name of the units of work
+		 */
+		private Stage(String name, int threads, BlockingQueue<Batch> input, BlockingQueue<Batch> output,
+				Stage next, String unit) {
+			this.name = name;
+			this.threads = threads;
+			this.input = input;
+			this.output = output;
+			this.next = next;
+			this.unit = unit;
+			this.running = new AtomicInteger(threads);
+			this.batches = new LongAdder();
+			this.units = new LongAdder();
+			this.alive = new LongAdder();
+			this.starved = new LongAdder();
+			this.blocked = new LongAdder();
+		}
+
+		/**
+		 * Takes batches from the input queue and processes them until the input
+		 * ends
+		 *
+		 * @throws InterruptedException if the thread is interrupted
+		 */
+		protected void work() throws InterruptedException {
+			while (true) {
+				long start = System.nanoTime();
+				Batch batch = input.take();
+				starved.add(System.nanoTime() - start);
+
+				if (batch == END) {
+					return;
+				}
+				process(batch);
+			}
+		}
+
+		/**
+		 * Processes @param batch and passes it to the next stage
+		 *
+		 * @param batch - batch from the input queue
+		 * @throws InterruptedException if the thread is interrupted
+		 */
+		protected abstract void process(Batch batch) throws InterruptedException;
+
+		/**
+		 * Counts @param batch with @param count units of work, and puts it in the
+		 * output queue, waiting for room if it is full
+		 *
+		 * @param batch - processed batch
+		 * @param count - units of work done for the batch
+		 * @throws InterruptedException if the thread is interrupted
+		 */
+		protected void emit(Batch batch, long count) throws InterruptedException {
+			batches.increment();
+			units.add(count);
+
+			if (output != null) {
+				long start = System.nanoTime();
+				output.put(batch);
+				blocked.add(System.nanoTime() - start);
+			}
+		}
+
+		/**
+		 * Called by each thread once it is done. The last thread ends the input of
+		 * the next stage.
+		 *
+		 * @param duration - time the thread was running, in nanoseconds
+		 */
+		private void finish(long duration) {
+			alive.add(duration);
+
+			if (running.decrementAndGet() == 0 && output != null) {
+				for (int i = 0; i < next.threads; i++) {
+					try {
+						output.put(END);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return;
+					}
+				}
+			}
+		}
+
+		/**
+		 * Returns the share of @param elapsed the threads spent working
+		 *
+		 * @param elapsed - duration of the build, in nanoseconds
+		 * @return - utilization between 0 and 1
+		 */
+		private double getUtilization(long elapsed) {
+			long busy = alive.sum() - starved.sum() - blocked.sum();
+			return elapsed <= 0 ? 0 : Math.max(busy, 0) / ((double) threads * elapsed);
+		}
+	}
+
+	/**
+	 * Reads files into batches of whole lines
+	 */
+	private static class ReadStage extends Stage {
+
+		/**
+		 * Files that were not read yet
+		 */
+		private final ConcurrentLinkedQueue<Path> files;
+
+		/**
+		 * Constructor
+		 *
+		 * @param threads - number of threads
+		 * @param files   - files to read
+		 * @param output  - batches for the next stage
+		 * @param next    - next stage
+		 */
+		private ReadStage(int threads, ConcurrentLinkedQueue<Path> files, BlockingQueue<Batch> output, Stage next) {
+			super("read", threads, null, output, next, "bytes");
+			this.files = files;
+		}
+
+		@Override
+		protected void work() throws InterruptedException {
+			Path path;
+			while ((path = files.poll()) != null) {
+				read(path);
+			}
+		}
+
+		@Override
+		protected void process(Batch batch) {
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * Reads the file at @param path into batches that end at a line break,
+		 * except for the last one
+		 *
+		 * @param path - path of a text file
+		 * @throws InterruptedException if the thread is interrupted
+		 */
+		private void read(Path path) throws InterruptedException {
+			FileState file = new FileState(path);
+			int sequence = 0;
+			byte[] buffer = new byte[BATCH_SIZE];
+			int length = 0;
+
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+				int read;
+				while ((read = channel.read(ByteBuffer.wrap(buffer, length, buffer.length - length))) >= 0) {
+					length += read;
+					if (length < buffer.length) {
+						continue;
+					}
+
+					int end = lastLineEnd(buffer, length);
+					if (end == 0) {
+						// one line fills the buffer
+						buffer = Arrays.copyOf(buffer, buffer.length * 2);
+						continue;
+					}
+
+					byte[] rest = new byte[Math.max(BATCH_SIZE, 2 * (length - end))];
+					System.arraycopy(buffer, end, rest, 0, length - end);
+
+					Batch batch = new Batch(file, sequence++);
+					batch.bytes = buffer;
+					batch.length = end;
+					emit(batch, end);
+
+					buffer = rest;
+					length -= end;
+				}
+			} catch (IOException e) {
+				Batch batch = new Batch(file, sequence);
+				batch.last = true;
+				batch.failed = true;
+				emit(batch, 0);
+				return;
+			}
+
+			Batch batch = new Batch(file, sequence);
+			batch.bytes = buffer;
+			batch.length = length;
+			batch.last = true;
+			emit(batch, length);
+		}
+
+		/**
+		 * Returns the end of the last line that ends before @param length in
+		 * @param buffer
+		 *
+		 * @param buffer - UTF-8 text
+		 * @param length - number of bytes
+		 * @return - index after the last line terminator, or 0 if there is none
+		 */
+		private static int lastLineEnd(byte[] buffer, int length) {
+			for (int i = length - 1; i >= 0; i--) {
+				if (buffer[i] == '\n' || buffer[i] == '\r') {
+					return i + 1;
+				}
+			}
+			return 0;
+		}
+	}
+
+	/**
+	 * Splits the bytes of each batch into words
+	 */
+	private static class TokenizeStage extends Stage {
+
+		/**
+		 * Constructor
+		 *
+		 * @param threads - number of threads
+		 * @param input   - batches for the stage
+		 * @param output  - batches for the next stage
+		 * @param next    - next stage
+		 */
+		private TokenizeStage(int threads, BlockingQueue<Batch> input, BlockingQueue<Batch> output, Stage next) {
+			super("tokenize", threads, input, output, next, "words");
+		}
+
+		@Override
+		protected void process(Batch batch) throws InterruptedException {
+			batch.chars = new char[Math.max(batch.length, 16)];
+			batch.ends = new int[16];
+
+			if (!batch.failed) {
+				try {
+					Utf8Tokenizer.get().tokenize(ByteBuffer.wrap(batch.bytes), 0, batch.length, batch);
+				} catch (CharacterCodingException e) {
+					// no word of the batch was passed on, and the file is dropped
+					batch.failed = true;
+				}
+			}
+
+			batch.bytes = null;
+			emit(batch, batch.words);
+		}
+	}
+
+	/**
+	 * Stems the words of each batch
+	 */
+	private static class StemStage extends Stage {
+
+		/**
+		 * Constructor
+		 *
+		 * @param threads - number of threads
+		 * @param input   - batches for the stage
+		 * @param output  - batches for the next stage
+		 * @param next    - next stage
+		 */
+		private StemStage(int threads, BlockingQueue<Batch> input, BlockingQueue<Batch> output, Stage next) {
+			super("stem", threads, input, output, next, "words");
+		}
+
+		@Override
+		protected void process(Batch batch) throws InterruptedException {
+			StemCache stemmer = StemCache.get();
+			batch.stems = new String[batch.words];
+
+			int start = 0;
+			for (int i = 0; i < batch.words; i++) {
+				batch.stems[i] = stemmer.stem(batch.chars, start, batch.ends[i] - start);
+				start = batch.ends[i];
+			}
+
+			batch.chars = null;
+			batch.ends = null;
+			emit(batch, batch.words);
+		}
+	}
+
+	/**
+	 * Adds the stems of each file to its postings in the order of the file
+	 */
+	private class AccumulateStage extends Stage {
+
+		/**
+		 * Constructor
+		 *
+		 * @param threads - number of threads
+		 * @param input   - batches for the stage
+		 */
+		private AccumulateStage(int threads, BlockingQueue<Batch> input) {
+			super("accumulate", threads, input, null, null, "postings");
+		}
+
+		@Override
+		protected void process(Batch batch) throws InterruptedException {
+			FileState file = batch.file;
+
+			synchronized (file) {
+				file.pending.put(batch.sequence, batch);
+				if (file.draining) {
+					// the thread that is adding batches of the file adds this one too
+					return;
+				}
+				file.draining = true;
+			}
+
+			while (true) {
+				Batch ready;
+				synchronized (file) {
+					ready = file.pending.remove(file.next);
+					if (ready == null) {
+						file.draining = false;
+						return;
+					}
+					file.next++;
+				}
+
+				int added = 0;
+				if (ready.failed && !file.failed) {
+					System.out.println("Cannot Stem File");
+					file.failed = true;
+				}
+				if (!file.failed) {
+					for (String stem : ready.stems) {
+						file.position++;
+						file.local.add(stem, file.location, file.position);
+					}
+					added = ready.stems.length;
+				}
+				ready.stems = null;
+
+				if (ready.last && !file.failed) {
+					file.local.seal();
+					index.addAll(file.local);
+				}
+				emit(ready, added);
+			}
+		}
+	}
+
+	/**
+	 * Runs one thread of a stage
+	 */
+	private static class Worker extends Thread {
+
+		/**
+		 * Stage of the thread
+		 */
+		private final Stage stage;
+
+		/**
+		 * Creates the worker as a daemon thread, so it never keeps the program
+		 * running
+		 *
+		 * @param stage - stage of the thread
+		 */
+		private Worker(Stage stage) {
+			this.stage = stage;
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			long start = System.nanoTime();
+			try {
+				stage.work();
+			} catch (InterruptedException e) {
+				System.err.println("Warning: Pipeline stage interrupted.");
+				Thread.currentThread().interrupt();
+			} finally {
+				stage.finish(System.nanoTime() - start);
+			}
+		}
+	}
+}
@@ -0,0 +1,354 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * A sorted set of word positions for one word in one location. Positions are
+ * stored in a growable int array while the list is being built. Once sealed,
+ * the positions are delta encoded and packed into a byte array using a variable
+ * length encoding, which is much smaller than a TreeSet of boxed Integers.
+ *
+ * Adding to a sealed list will unseal it first, so sealing never changes the
+ * behavior of the list, only how it is stored.
+ *
+ * @author Porfirio Mohabir
+ *
+ */
+public class PostingList implements Iterable<Integer> {
+
+	/**
+	 * Initial capacity of the positions array
+	 */
+	private static final int INITIAL_CAPACITY = 4;
+
+	/**
+	 * Sorted positions, or null if the list is sealed
+	 */
+	private int[] positions;
+
+	/**
+	 * Delta and varint encoded positions, or null if the list is not sealed
+	 */
+	private byte[] encoded;
+
+	/**
+	 * Number of positions in the list
+	 */
+	private int size;
+
+	/**
+	 * Creates an empty PostingList
+	 */
+	public PostingList() {
+		positions = new int[INITIAL_CAPACITY];
+		encoded = null;
+		size = 0;
+	}
+
+	/**
+	 * Creates a copy of @param other that is stored the same way. The encoded
+	 * bytes of a sealed list are never changed, so they are shared instead of
+	 * copied, and a sealed list is copied without decoding it.
+	 *
+	 * @param other - PostingList to copy
+	 */
+	public PostingList(PostingList other) {
+		positions = other.encoded == null ? Arrays.copyOf(other.positions, Math.max(other.size, INITIAL_CAPACITY)) : null;
+		encoded = other.encoded;
+		size = other.size;
+	}
+
+	/**
+	 * Adds the @param position to the list if it is not already there
+	 *
+	 * @param position - position of a word
+	 * @return - True if the position was added
+	 */
+	public boolean add(int position) {
+		unseal();
+
+		if (size == 0 || position > positions[size - 1]) {
+			grow(size + 1);
+			positions[size++] = position;
+			return true;
+		}
+
+		int index = Arrays.binarySearch(positions, 0, size, position);
+		if (index >= 0) {
+			return false;
+		}
+
+		index = -(index + 1);
+		grow(size + 1);
+		System.arraycopy(positions, index, positions, index + 1, size - index);
+		positions[index] = position;
+		size++;
+		return true;
+	}
+
+	/**
+	 * Adds all positions in @param other to this list. If this list is empty, it
+	 * takes the encoded bytes of a sealed @param other as they are.
+	 *
+	 * @param other - PostingList to merge into this list
+	 * @return - True if any position was added
+	 */
+	public boolean addAll(PostingList other) {
+		if (other.size == 0) {
+			return false;
+		}
+
+		if (size == 0 && other.encoded != null) {
+			positions = null;
+			encoded = other.encoded;
+			size = other.size;
+			return true;
+		}
+
+		int[] theirs = other.toArray();
+		unseal();
+
+		if (size == 0 || theirs[0] > positions[size - 1]) {
+			grow(size + theirs.length);
+			System.arraycopy(theirs, 0, positions, size, theirs.length);
+			size += theirs.length;
+			return true;
+		}
+
+		int[] mine = positions;
+		int[] merged = new int[size + theirs.length];
+		int i = 0;
+		int j = 0;
+		int k = 0;
+
+		while (i < size && j < theirs.length) {
+			if (mine[i] < theirs[j]) {
+				merged[k++] = mine[i++];
+			} else if (mine[i] > theirs[j]) {
+				merged[k++] = theirs[j++];
+			} else {
+				merged[k++] = mine[i++];
+				j++;
+			}
+		}
+
+		while (i < size) {
+			merged[k++] = mine[i++];
+		}
+
+		while (j < theirs.length) {
+			merged[k++] = theirs[j++];
+		}
+
+		boolean changed = k > size;
+		positions = merged;
+		size = k;
+		return changed;
+	}
+
+	/**
+	 * Returns True if the @param position is in the list
+	 *
+	 * @param position - position of a word
+	 * @return - True or False
+	 */
+	public boolean contains(int position) {
+		if (encoded == null) {
+			return Arrays.binarySearch(positions, 0, size, position) >= 0;
+		}
+
+		var iterator = iterator();
+		while (iterator.hasNext()) {
+			int next = iterator.nextInt();
+			if (next >= position) {
+				return next == position;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the number of positions in the list
+	 *
+	 * @return - number of positions
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns True if the list is currently stored in its encoded form
+	 *
+	 * @return - True or False
+	 */
+	public boolean isSealed() {
+		return encoded != null;
+	}
+
+	/**
+	 * Delta and varint encodes the positions and releases the int array. Does
+	 * nothing if the list is already sealed.
+	 */
+	public void seal() {
+		if (encoded != null) {
+			return;
+		}
+
+		byte[] buffer = new byte[size * 5];
+		int length = 0;
+		int previous = 0;
+
+		for (int i = 0; i < size; i++) {
+			int delta = positions[i] - previous;
+			previous = positions[i];
+
+			while ((delta & ~0x7F) != 0) {
+				buffer[length++] = (byte) ((delta & 0x7F) | 0x80);
+				delta >>>= 7;
+			}
+			buffer[length++] = (byte) delta;
+		}
+
+		encoded = Arrays.copyOf(buffer, length);
+		positions = null;
+	}
+
+	/**
+	 * Adds @param offset to every position in the list, keeping it sealed if it
+	 * was
+	 *
+	 * @param offset - amount to add to each position
+	 */
+	void shift(int offset) {
+		boolean sealed = encoded != null;
+		unseal();
+
+		for (int i = 0; i < size; i++) {
+			positions[i] += offset;
+		}
+
+		if (sealed) {
+			seal();
+		}
+	}
+
+	/**
+	 * Returns the positions as a new sorted int array
+	 *
+	 * @return - array of positions
+	 */
+	public int[] toArray() {
+		if (encoded == null) {
+			return Arrays.copyOf(positions, size);
+		}
+
+		int[] decoded = new int[size];
+		var iterator = iterator();
+		for (int i = 0; i < size; i++) {
+			decoded[i] = iterator.nextInt();
+		}
+		return decoded;
+	}
+
+	@Override
+	public PrimitiveIterator.OfInt iterator() {
+		return encoded == null ? new ArrayIterator() : new EncodedIterator();
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(toArray());
+	}
+
+	/**
+	 * Decodes the list back into an int array so it can be changed
+	 */
+	private void unseal() {
+		if (encoded != null) {
+			int[] decoded = toArray();
+			encoded = null;
+			positions = decoded.length < INITIAL_CAPACITY ? Arrays.copyOf(decoded, INITIAL_CAPACITY) : decoded;
+		}
+	}
+
+	/**
+	 * Makes sure the positions array can hold @param capacity positions
+	 *
+	 * @param capacity - the number of positions needed
+	 */
+	private void grow(int capacity) {
+		if (capacity > positions.length) {
+			positions = Arrays.copyOf(positions, Math.max(capacity, positions.length * 2));
+		}
+	}
+
+	/**
+	 * Iterates over the positions of an unsealed list
+	 */
+	private class ArrayIterator implements PrimitiveIterator.OfInt {
+
+		/**
+		 * Index of the next position
+		 */
+		private int index = 0;
+
+		@Override
+		public boolean hasNext() {
+			return index < size;
+		}
+
+		@Override
+		public int nextInt() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return positions[index++];
+		}
+	}
+
+	/**
+	 * Decodes the positions of a sealed list one at a time
+	 */
+	private class EncodedIterator implements PrimitiveIterator.OfInt {
+
+		/**
+		 * Offset of the next byte to decode
+		 */
+		private int offset = 0;
+
+		/**
+		 * Number of positions decoded so far
+		 */
+		private int count = 0;
+
+		/**
+		 * Last decoded position
+		 */
+		private int previous = 0;
+
+		@Override
+		public boolean hasNext() {
+			return count < size;
+		}
+
+		@Override
+		public int nextInt() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			int delta = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = encoded[offset++];
+				delta |= (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+
+			count++;
+			previous += delta;
+			return previous;
+		}
+	}
+}
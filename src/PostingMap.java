@@ -0,0 +1,138 @@
+import java.util.Arrays;
+
+/**
+ * Maps the location IDs of one word to the PostingList of that word in each
+ * location. The IDs are kept sorted in a pair of parallel arrays, so a lookup
+ * is a binary search and adding a location with a new, larger ID is an append.
+ *
+ * @author Porfirio Mohabir
+ *
+ */
+public class PostingMap {
+
+	/**
+	 * Initial capacity of the arrays
+	 */
+	private static final int INITIAL_CAPACITY = 2;
+
+	/**
+	 * Sorted location IDs
+	 */
+	private int[] locations;
+
+	/**
+	 * PostingList of each location, parallel to locations
+	 */
+	private PostingList[] postings;
+
+	/**
+	 * Number of locations in the map
+	 */
+	private int size;
+
+	/**
+	 * Creates an empty PostingMap
+	 */
+	public PostingMap() {
+		locations = new int[INITIAL_CAPACITY];
+		postings = new PostingList[INITIAL_CAPACITY];
+		size = 0;
+	}
+
+	/**
+	 * Returns the PostingList for the location @param id, or null if there is none
+	 *
+	 * @param id - ID of a location
+	 * @return - PostingList or null
+	 */
+	public PostingList get(int id) {
+		if (size > 0 && locations[size - 1] == id) {
+			return postings[size - 1];
+		}
+
+		int index = Arrays.binarySearch(locations, 0, size, id);
+		return index < 0 ? null : postings[index];
+	}
+
+	/**
+	 * Maps the location @param id to @param list, replacing any existing list
+	 *
+	 * @param id   - ID of a location
+	 * @param list - PostingList of the location
+	 */
+	public void put(int id, PostingList list) {
+		int index = size == 0 || id > locations[size - 1] ? -(size + 1)
+				: Arrays.binarySearch(locations, 0, size, id);
+
+		if (index >= 0) {
+			postings[index] = list;
+			return;
+		}
+
+		index = -(index + 1);
+		if (size == locations.length) {
+			locations = Arrays.copyOf(locations, size * 2);
+			postings = Arrays.copyOf(postings, size * 2);
+		}
+
+		System.arraycopy(locations, index, locations, index + 1, size - index);
+		System.arraycopy(postings, index, postings, index + 1, size - index);
+		locations[index] = id;
+		postings[index] = list;
+		size++;
+	}
+
+	/**
+	 * Returns the PostingList for the location @param id, adding an empty one if
+	 * there is none
+	 *
+	 * @param id - ID of a location
+	 * @return - PostingList of the location
+	 */
+	public PostingList putIfAbsent(int id) {
+		PostingList list = get(id);
+		if (list == null) {
+			list = new PostingList();
+			put(id, list);
+		}
+		return list;
+	}
+
+	/**
+	 * Returns the number of locations in the map
+	 *
+	 * @return - number of locations
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the location ID at @param index, in increasing ID order
+	 *
+	 * @param index - index between 0 and size()
+	 * @return - ID of a location
+	 */
+	public int getLocation(int index) {
+		return locations[index];
+	}
+
+	/**
+	 * Returns the PostingList at @param index, in increasing ID order
+	 *
+	 * @param index - index between 0 and size()
+	 * @return - PostingList of a location
+	 */
+	public PostingList getPostings(int index) {
+		return postings[index];
+	}
+
+	/**
+	 * Seals every PostingList in the map
+	 */
+	public void seal() {
+		for (int i = 0; i < size; i++) {
+			postings[i].seal();
+		}
+	}
+}
@@ -9,7 +9,6 @@ import java.text.DecimalFormat;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeMap;
-import java.util.TreeSet;
 
 /**
  * Outputs several tree-based data structures in "pretty" JSON format where
@@ -32,7 +31,7 @@ public class PrettyJSONWriter {
 	 * @param level    the initial indent level
 	 * @throws IOException
 	 */
-	public static void asArray(TreeSet<Integer> elements, Writer writer, int level) throws IOException {
+	public static void asArray(Iterable<Integer> elements, Writer writer, int level) throws IOException {
 		writer.write('[');
 		var iterator = elements.iterator();
 
@@ -58,9 +57,9 @@ public class PrettyJSONWriter {
 	 * @param path     the file path to use
 	 * @throws IOException
 	 *
-	 * @see #asArray(TreeSet, Writer, int)
+	 * @see #asArray(Iterable, Writer, int)
 	 */
-	public static void asArray(TreeSet<Integer> elements, Path path) throws IOException {
+	public static void asArray(Iterable<Integer> elements, Path path) throws IOException {
 		// THIS IS PROVIDED FOR YOU; DO NOT MODIFY
 		try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
 			asArray(elements, writer, 0);
@@ -73,9 +72,9 @@ public class PrettyJSONWriter {
 	 * @param elements the elements to use
 	 * @return a {@link String} containing the elements in pretty JSON format
 	 *
-	 * @see #asArray(TreeSet, Writer, int)
+	 * @see #asArray(Iterable, Writer, int)
 	 */
-	public static String asArray(TreeSet<Integer> elements) {
+	public static String asArray(Iterable<Integer> elements) {
 		try {
 			StringWriter writer = new StringWriter();
 			asArray(elements, writer, 0);
@@ -155,7 +154,7 @@ public class PrettyJSONWriter {
 	 * @param level    the initial indent level
 	 * @throws IOException
 	 */
-	public static void asNestedObject(TreeMap<String, TreeSet<Integer>> elements, Writer writer, int level)
+	public static void asNestedObject(TreeMap<String, ? extends Iterable<Integer>> elements, Writer writer, int level)
 			throws IOException {
 		writer.write("{");
 		var iterator = elements.keySet().iterator();
@@ -187,7 +186,8 @@ public class PrettyJSONWriter {
 	 *
 	 * @see #asNestedObject(TreeMap, Writer, int)
 	 */
-	public static void asNestedObject(TreeMap<String, TreeSet<Integer>> elements, Path path) throws IOException {
+	public static void asNestedObject(TreeMap<String, ? extends Iterable<Integer>> elements, Path path)
+			throws IOException {
 		// THIS IS PROVIDED FOR YOU; DO NOT MODIFY
 		try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
 			asNestedObject(elements, writer, 0);
@@ -202,7 +202,7 @@ public class PrettyJSONWriter {
 	 *
 	 * @see #asNestedObject(TreeMap, Writer, int)
 	 */
-	public static String asNestedObject(TreeMap<String, TreeSet<Integer>> elements) {
+	public static String asNestedObject(TreeMap<String, ? extends Iterable<Integer>> elements) {
 		// THIS IS PROVIDED FOR YOU; DO NOT MODIFY
 		try {
 			StringWriter writer = new StringWriter();
@@ -299,8 +299,9 @@ public class PrettyJSONWriter {
 	 * @param level    the initial indent level
 	 * @throws IOException
 	 */
-	public static void asNestedNestedObject(TreeMap<String, TreeMap<String, TreeSet<Integer>>> elements, Writer writer,
-			int level) throws IOException {
+	public static void asNestedNestedObject(
+			TreeMap<String, ? extends TreeMap<String, ? extends Iterable<Integer>>> elements, Writer writer, int level)
+			throws IOException {
 		writer.write("{");
 		var iterator = elements.keySet().iterator();
 
@@ -332,7 +333,8 @@ public class PrettyJSONWriter {
 	 *
 	 * @see #asNestedNestedObject(TreeMap, Writer, int)
 	 */
-	public static void asNestedNestedObject(TreeMap<String, TreeMap<String, TreeSet<Integer>>> elements, Path path)
+	public static void asNestedNestedObject(
+			TreeMap<String, ? extends TreeMap<String, ? extends Iterable<Integer>>> elements, Path path)
 			throws IOException {
 		// THIS IS PROVIDED FOR YOU; DO NOT MODIFY
 		try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
@@ -348,7 +350,8 @@ public class PrettyJSONWriter {
 	 *
 	 * @see #asNestedNestedObject(TreeMap, Writer, int)
 	 */
-	public static String asNestedNestedObject(TreeMap<String, TreeMap<String, TreeSet<Integer>>> elements) {
+	public static String asNestedNestedObject(
+			TreeMap<String, ? extends TreeMap<String, ? extends Iterable<Integer>>> elements) {
 		// THIS IS PROVIDED FOR YOU; DO NOT MODIFY
 		try {
 			StringWriter writer = new StringWriter();
@@ -6,9 +6,6 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
-import opennlp.tools.stemmer.Stemmer;
-import opennlp.tools.stemmer.snowball.SnowballStemmer;
-
 /**
  * A Utility Class that Builds A Query Data Structure of Stems Lines and total
  * matches of results Using the Inverted Index Data Structure
@@ -18,28 +15,58 @@ import opennlp.tools.stemmer.snowball.SnowballStemmer;
  */
 public class QueryBuilder implements QueryBuilderInterface {
 
-	/**
-	 * The default stemmer algorithm used by this class.
-	 */
-	private static final SnowballStemmer.ALGORITHM DEFAULT = SnowballStemmer.ALGORITHM.ENGLISH;
-
 	/**
 	 * Inverted Index Data Structure
 	 */
-	private final InvertedIndex index;
+	private final InvertedIndexInterface index;
 
 	/**
 	 * Initializes the Query Data Structure
 	 */
 	private final TreeMap<String, List<Result>> results;
 
+	/**
+	 * Maximum number of Results kept for each query, or 0 for all of them
+	 */
+	private final int limit;
+
+	/**
+	 * Cache of searches in the index, shared by its other QueryBuilders
+	 */
+	private final QueryCache cache;
+
 	/**
 	 * Creates the query structure and maps the @param index to the instance
 	 *
 	 * @param index - Inverted Index
 	 */
-	public QueryBuilder(InvertedIndex index) {
+	public QueryBuilder(InvertedIndexInterface index) {
+		this(index, 0);
+	}
+
+	/**
+	 * Creates the query structure that keeps at most @param limit Results for
+	 * each query
+	 *
+	 * @param index - Inverted Index
+	 * @param limit - maximum number of Results for each query, or 0 for all
+	 */
+	public QueryBuilder(InvertedIndexInterface index, int limit) {
+		this(index, limit, QueryCache.get(index));
+	}
+
+	/**
+	 * Creates the query structure that keeps at most @param limit Results for
+	 * each query, and looks up searches in @param cache first
+	 *
+	 * @param index - Inverted Index
+	 * @param limit - maximum number of Results for each query, or 0 for all
+	 * @param cache - QueryCache of the index, which may be shared
+	 */
+	public QueryBuilder(InvertedIndexInterface index, int limit, QueryCache cache) {
 		this.index = index;
+		this.limit = limit;
+		this.cache = cache;
 		results = new TreeMap<>();
 	}
 
@@ -51,20 +78,16 @@ public class QueryBuilder implements QueryBuilderInterface {
 	 */
 	@Override
 	public void parseLine(String line, boolean exact) {
-		Stemmer stemmer = new SnowballStemmer(DEFAULT);
+		StemCache stemmer = StemCache.get();
 
 		TreeSet<String> queries = new TreeSet<>();
-		String[] parsedLine = TextParser.parse(line);
-
-		for (int i = 0; i < parsedLine.length; i++) {
-			CharSequence stem = stemmer.stem(parsedLine[i]);
-			queries.add(stem.toString());
-		}
+		TextTokenizer.get().tokenize(line,
+				(chars, length) -> queries.add(stemmer.stem(chars, length)));
 
 		String queryLine = String.join(" ", queries);
 
 		if (!(queryLine.isBlank()) && !results.containsKey(queryLine)) {
-			results.put(queryLine, index.search(queries, exact));
+			results.put(queryLine, cache.search(index, queries, exact, limit));
 		}
 	}
 
@@ -0,0 +1,325 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+
+/**
+ * A bounded, least recently used cache of searches, shared by the
+ * QueryBuilders of one index. It keeps the complete Results of a query line,
+ * keyed by the sorted stems, the exact flag and the limit. A miss is searched
+ * by the index itself, so partial searches still use the prefix ranges of the
+ * index. Entries are weighed by an estimate of their size in bytes, and the
+ * least recently used entries are removed when the total is over the capacity.
+ *
+ * The cache keeps its own copies of the Results and returns new copies on
+ * every hit, so changing a Result never changes the cache or the Results of
+ * another QueryBuilder.
+ *
+ * Every lookup passes the version of the index. When the version changes, the
+ * index was changed after the entries were stored, so the whole cache is
+ * cleared.
+ *
+ * @author Porfirio Mohabir
+ *
+ */
+public class QueryCache {
+
+	/**
+	 * Default capacity, in estimated bytes
+	 */
+	public static final long DEFAULT_CAPACITY = 32L * 1024 * 1024;
+
+	/**
+	 * QueryCache of each index, removed when the index is no longer used
+	 */
+	private static final Map<InvertedIndexInterface, QueryCache> SHARED = new WeakHashMap<>();
+
+	/**
+	 * Entries in order of least recent use
+	 */
+	private final LinkedHashMap<Key, Entry> entries;
+
+	/**
+	 * Maximum total weight of the entries
+	 */
+	private final long capacity;
+
+	/**
+	 * Total weight of the entries
+	 */
+	private long weight;
+
+	/**
+	 * Version of the index the entries were stored for
+	 */
+	private long version;
+
+	/**
+	 * Number of lookups that were found in the cache
+	 */
+	private long hits;
+
+	/**
+	 * Number of lookups that were not found in the cache
+	 */
+	private long misses;
+
+	/**
+	 * Creates a QueryCache with the default capacity
+	 */
+	public QueryCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a QueryCache that holds about @param capacity bytes of entries
+	 *
+	 * @param capacity - maximum total weight of the entries
+	 */
+	public QueryCache(long capacity) {
+		this.entries = new LinkedHashMap<>(16, 0.75f, true);
+		this.capacity = capacity;
+		this.weight = 0;
+		this.version = 0;
+		this.hits = 0;
+		this.misses = 0;
+	}
+
+	/**
+	 * Returns the QueryCache of @param index, which is shared by every
+	 * QueryBuilder of the index that does not get its own
+	 *
+	 * @param index - Inverted Index
+	 * @return - QueryCache of the index
+	 */
+	public static QueryCache get(InvertedIndexInterface index) {
+		synchronized (SHARED) {
+			return SHARED.computeIfAbsent(index, i -> new QueryCache());
+		}
+	}
+
+	/**
+	 * Returns the best @param limit Results of @param queries in @param index,
+	 * from the cache if possible
+	 *
+	 * @param index   - Inverted Index to search
+	 * @param queries - sorted stems of a Query Line
+	 * @param exact   - True for exact matches, False for partial matches
+	 * @param limit   - maximum number of Results, or 0 for all of them
+	 * @return - sorted, unmodifiable List of Results that belong to the caller
+	 */
+	public List<Result> search(InvertedIndexInterface index, Collection<String> queries, boolean exact, int limit) {
+		long current = index.version();
+		limit = Math.max(limit, 0);
+		Key key = new Key(String.join(" ", queries), exact, limit);
+
+		Result[] cached = get(key, current);
+		if (cached != null) {
+			return copy(cached);
+		}
+
+		List<Result> results = index.search(queries, exact, limit);
+
+		Result[] stored = new Result[results.size()];
+		for (int i = 0; i < stored.length; i++) {
+			Result result = results.get(i);
+			stored[i] = new Result(result.getFile(), result.getCount(), result.getFileSize());
+		}
+
+		put(key, stored, 64 + 2L * key.text.length() + 48L * stored.length, current);
+		return Collections.unmodifiableList(results);
+	}
+
+	/**
+	 * Returns a new copy of each of the @param results
+	 *
+	 * @param results - cached Results
+	 * @return - unmodifiable List of copies
+	 */
+	private static List<Result> copy(Result[] results) {
+		List<Result> copies = new ArrayList<>(results.length);
+		for (Result result : results) {
+			copies.add(new Result(result.getFile(), result.getCount(), result.getFileSize()));
+		}
+		return Collections.unmodifiableList(copies);
+	}
+
+	/**
+	 * Returns the Results of @param key, or null if it is not in the cache
+	 *
+	 * @param key     - Key of an entry
+	 * @param current - version of the index
+	 * @return - cached Results or null
+	 */
+	private synchronized Result[] get(Key key, long current) {
+		checkVersion(current);
+
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			misses++;
+			return null;
+		}
+
+		hits++;
+		return entry.value;
+	}
+
+	/**
+	 * Stores @param value for @param key, and removes the least recently used
+	 * entries until the total weight is within the capacity
+	 *
+	 * @param key     - Key of the entry
+	 * @param value   - Results to store
+	 * @param size    - estimated size of the entry in bytes
+	 * @param current - version of the index the value was found in
+	 */
+	private synchronized void put(Key key, Result[] value, long size, long current) {
+		checkVersion(current);
+
+		if (size > capacity) {
+			return;
+		}
+
+		Entry old = entries.put(key, new Entry(value, size));
+		if (old != null) {
+			weight -= old.size;
+		}
+		weight += size;
+
+		Iterator<Entry> iterator = entries.values().iterator();
+		while (weight > capacity && iterator.hasNext()) {
+			weight -= iterator.next().size;
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * Clears the cache if @param current is not the version the entries were
+	 * stored for. The caller must hold the lock.
+	 *
+	 * @param current - version of the index
+	 */
+	private void checkVersion(long current) {
+		if (current != version) {
+			entries.clear();
+			weight = 0;
+			version = current;
+		}
+	}
+
+	/**
+	 * Removes every entry
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		weight = 0;
+	}
+
+	/**
+	 * Returns the number of entries
+	 *
+	 * @return - number of entries
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns the number of lookups that were found in the cache
+	 *
+	 * @return - number of hits
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of lookups that were not found in the cache
+	 *
+	 * @return - number of misses
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Key of a cached query line
+	 */
+	private static class Key {
+
+		/**
+		 * Sorted stems joined by spaces
+		 */
+		private final String text;
+
+		/**
+		 * True for exact matches
+		 */
+		private final boolean exact;
+
+		/**
+		 * Maximum number of Results, or 0 for all of them
+		 */
+		private final int limit;
+
+		/**
+		 * Creates a Key
+		 *
+		 * @param text  - sorted stems joined by spaces
+		 * @param exact - True for exact matches
+		 * @param limit - maximum number of Results, or 0 for all of them
+		 */
+		private Key(String text, boolean exact, int limit) {
+			this.text = text;
+			this.exact = exact;
+			this.limit = limit;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Key)) {
+				return false;
+			}
+
+			Key key = (Key) other;
+			return exact == key.exact && limit == key.limit && text.equals(key.text);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(text, exact, limit);
+		}
+	}
+
+	/**
+	 * Cached value with its estimated size
+	 */
+	private static class Entry {
+
+		/**
+		 * Copies of the Results
+		 */
+		private final Result[] value;
+
+		/**
+		 * Estimated size in bytes
+		 */
+		private final long size;
+
+		/**
+		 * Creates an Entry
+		 *
+		 * @param value - copies of the Results
+		 * @param size  - estimated size in bytes
+		 */
+		private Entry(Result[] value, long size) {
+			this.value = value;
+			this.size = size;
+		}
+	}
+}
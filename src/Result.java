@@ -52,6 +52,31 @@ public class Result implements Comparable<Result> {
 		return file.compareTo(r.file);
 	}
 
+	/**
+	 * Compares a possible Result to @param r the same way as compareTo, without
+	 * creating the Result first.
+	 *
+	 * @param file         - Name of File
+	 * @param totalMatches - Total Matches
+	 * @param fileSize     - Size of Stemmed File
+	 * @param r            - Result to compare to
+	 * @return - a negative number if the possible Result comes before @param r
+	 */
+	public static int compare(String file, int totalMatches, int fileSize, Result r) {
+
+		int result = Double.compare(r.score, (double) totalMatches / (double) fileSize);
+		if (result != 0) {
+			return result;
+		}
+
+		result = Integer.compare(r.count, totalMatches);
+		if (result != 0) {
+			return result;
+		}
+
+		return file.compareTo(r.file);
+	}
+
 	/**
 	 * Function take in @param and updates the count and score.
 	 *
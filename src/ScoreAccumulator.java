@@ -0,0 +1,178 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Adds up the total matches of each location during a search. Counts are kept
+ * in an int array indexed by location ID, with a second array that remembers
+ * which IDs were touched, so the accumulator can be cleared and reused by the
+ * next search on the same thread without allocating again.
+ *
+ * Warning: This class is not thread-safe. Each thread should use its own
+ * instance.
+ *
+ * @author Porfirio Mohabir
+ *
+ */
+public class ScoreAccumulator {
+
+	/**
+	 * ScoreAccumulator of each thread, reused by every search on that thread
+	 */
+	private static final ThreadLocal<ScoreAccumulator> LOCAL = ThreadLocal.withInitial(ScoreAccumulator::new);
+
+	/**
+	 * Initial capacity of the arrays
+	 */
+	private static final int INITIAL_CAPACITY = 64;
+
+	/**
+	 * Total matches of each location ID
+	 */
+	private int[] counts;
+
+	/**
+	 * Location IDs with a count greater than zero, in the order they were found
+	 */
+	private int[] touched;
+
+	/**
+	 * Number of touched location IDs
+	 */
+	private int size;
+
+	/**
+	 * Creates an empty ScoreAccumulator
+	 */
+	public ScoreAccumulator() {
+		counts = new int[INITIAL_CAPACITY];
+		touched = new int[INITIAL_CAPACITY];
+		size = 0;
+	}
+
+	/**
+	 * Returns the ScoreAccumulator of the current thread
+	 *
+	 * @return - ScoreAccumulator of the current thread
+	 */
+	public static ScoreAccumulator get() {
+		return LOCAL.get();
+	}
+
+	/**
+	 * Adds @param matches to the total matches of the location @param id
+	 *
+	 * @param id      - ID of a location
+	 * @param matches - number of matches to add, greater than zero
+	 */
+	public void add(int id, int matches) {
+		if (id >= counts.length) {
+			counts = Arrays.copyOf(counts, Math.max(id + 1, counts.length * 2));
+		}
+
+		if (counts[id] == 0) {
+			if (size == touched.length) {
+				touched = Arrays.copyOf(touched, size * 2);
+			}
+			touched[size++] = id;
+		}
+
+		counts[id] += matches;
+	}
+
+	/**
+	 * Adds the total matches of every location in @param other to this
+	 * accumulator
+	 *
+	 * @param other - ScoreAccumulator that shares location IDs with this one
+	 */
+	public void addAll(ScoreAccumulator other) {
+		for (int i = 0; i < other.size; i++) {
+			int id = other.touched[i];
+			add(id, other.counts[id]);
+		}
+	}
+
+	/**
+	 * Returns the number of locations with at least one match
+	 *
+	 * @return - number of locations
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Creates a Result for every location with at least one match, sorts them,
+	 * and then clears the accumulator.
+	 *
+	 * @param locations - DocumentTable used to look up locations and word counts
+	 * @return - sorted List of Results
+	 */
+	public List<Result> getResults(DocumentTable locations) {
+		return getResults(locations, 0);
+	}
+
+	/**
+	 * Returns the best @param limit Results in sorted order, and then clears the
+	 * accumulator. A bounded heap keeps the worst kept Result on top, so a Result
+	 * is only created for a location that beats it. A location without a word
+	 * count is skipped, since its words are still being added to the index.
+	 *
+	 * @param locations - DocumentTable used to look up locations and word counts
+	 * @param limit     - maximum number of Results, or 0 or less for all of them
+	 * @return - sorted List of at most @param limit Results
+	 */
+	public List<Result> getResults(DocumentTable locations, int limit) {
+		if (limit <= 0 || limit >= size) {
+			List<Result> results = new ArrayList<>(size);
+
+			for (int i = 0; i < size; i++) {
+				int id = touched[i];
+				int fileSize = locations.getCount(id);
+				if (fileSize > 0) {
+					results.add(new Result(locations.getLocation(id), counts[id], fileSize));
+				}
+			}
+
+			clear();
+			Collections.sort(results);
+			return results;
+		}
+
+		PriorityQueue<Result> heap = new PriorityQueue<>(limit, Collections.reverseOrder());
+
+		for (int i = 0; i < size; i++) {
+			int id = touched[i];
+			int fileSize = locations.getCount(id);
+			if (fileSize == 0) {
+				continue;
+			}
+
+			String location = locations.getLocation(id);
+			if (heap.size() < limit) {
+				heap.add(new Result(location, counts[id], fileSize));
+			} else if (Result.compare(location, counts[id], fileSize, heap.peek()) < 0) {
+				heap.poll();
+				heap.add(new Result(location, counts[id], fileSize));
+			}
+		}
+
+		clear();
+		List<Result> results = new ArrayList<>(heap);
+		Collections.sort(results);
+		return results;
+	}
+
+	/**
+	 * Resets the count of every touched location so the accumulator can be reused
+	 */
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			counts[touched[i]] = 0;
+		}
+		size = 0;
+	}
+}
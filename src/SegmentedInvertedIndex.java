@@ -0,0 +1,624 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A thread-safe WritableInvertedIndex. The index is kept as a list of
+ * immutable FrozenInvertedIndex segments instead of one shared structure.
+ * addAll() freezes the other index into a new segment before taking the lock,
+ * so workers only hold the write lock long enough to register the segment.
+ * Words added one at a time with add() are buffered and flushed as a segment
+ * before the next read.
+ *
+ * A background merger thread combines segments of the same size tier, so the
+ * number of segments stays small. Searches scatter across every segment and add
+ * up the matches of each location before the Results are created.
+ *
+ * @author Porfirio Mohabir
+ *
+ */
+public class SegmentedInvertedIndex implements WritableInvertedIndex {
+
+	/**
+	 * Number of segments of the same size tier that are merged together
+	 */
+	private static final int MERGE_FACTOR = 4;
+
+	/**
+	 * Lock Object
+	 */
+	private final SimpleReadWriteLock lock;
+
+	/**
+	 * Segments of the index, oldest first
+	 */
+	private final ArrayList<Segment> segments;
+
+	/**
+	 * Location IDs and word counts shared by every segment
+	 */
+	private final DocumentTable locations;
+
+	/**
+	 * Words added with add() that have not been flushed into a segment yet
+	 */
+	private InvertedIndex buffer;
+
+	/**
+	 * True if words were added with add() since the last flush
+	 */
+	private volatile boolean dirty;
+
+	/**
+	 * Number of times the index was changed
+	 */
+	private volatile long version;
+
+	/**
+	 * Background thread that merges segments
+	 */
+	private final Merger merger;
+
+	/**
+	 * Creates an empty SegmentedInvertedIndex and starts its merger thread
+	 */
+	public SegmentedInvertedIndex() {
+		lock = new SimpleReadWriteLock();
+		segments = new ArrayList<>();
+		locations = new DocumentTable();
+		buffer = new InvertedIndex();
+		dirty = false;
+		version = 0;
+		merger = new Merger();
+		merger.start();
+	}
+
+	/**
+	 * A FrozenInvertedIndex with the shared location ID of each of its location
+	 * IDs
+	 */
+	private static class Segment {
+
+		/**
+		 * Immutable index of the segment
+		 */
+		private final FrozenInvertedIndex index;
+
+		/**
+		 * Shared location ID of each location ID of the segment
+		 */
+		private final int[] ids;
+
+		/**
+		 * Creates a Segment
+		 *
+		 * @param index - immutable index of the segment
+		 * @param ids   - shared location ID of each location ID of the segment
+		 */
+		private Segment(FrozenInvertedIndex index, int[] ids) {
+			this.index = index;
+			this.ids = ids;
+		}
+	}
+
+	/**
+	 * Adds @param index as a new segment. Every location is kept in exactly one
+	 * segment, so if a location of the index is already in other segments, they
+	 * are merged with it first. The merge runs under the read lock only, and the
+	 * write lock is held just long enough to swap the segments. If another thread
+	 * changed those segments in the meantime, they are merged again under the
+	 * write lock.
+	 *
+	 * @param index - immutable index to add
+	 */
+	private void addSegment(FrozenInvertedIndex index) {
+		DocumentTable table = index.getLocationTable();
+
+		List<Segment> overlapping;
+		FrozenInvertedIndex merged;
+		{
+			lock.readLock().lock();
+			try {
+				overlapping = getOverlapping(table);
+				merged = merge(overlapping, index);
+			} finally {
+				lock.readLock().unlock();
+			}
+		}
+
+		{
+			lock.writeLock().lock();
+			try {
+				List<Segment> current = getOverlapping(table);
+				if (!current.equals(overlapping)) {
+					merged = merge(current, index);
+				}
+				segments.removeAll(current);
+
+				table = merged.getLocationTable();
+				int[] ids = new int[table.size()];
+				for (int id = 0; id < ids.length; id++) {
+					ids[id] = locations.add(table.getLocation(id));
+					locations.addCount(ids[id], table.getCount(id) - locations.getCount(ids[id]));
+				}
+
+				segments.add(new Segment(merged, ids));
+				version++;
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+		merger.wake();
+	}
+
+	/**
+	 * Returns the segments that have a location of @param table, oldest first.
+	 * The caller must hold the read or write lock.
+	 *
+	 * @param table - locations of a new segment
+	 * @return - segments that share a location with it
+	 */
+	private List<Segment> getOverlapping(DocumentTable table) {
+		HashSet<Integer> shared = new HashSet<>();
+		for (int id = 0; id < table.size(); id++) {
+			int existing = locations.getId(table.getLocation(id));
+			if (existing >= 0) {
+				shared.add(existing);
+			}
+		}
+
+		List<Segment> overlapping = new ArrayList<>();
+		if (shared.isEmpty()) {
+			return overlapping;
+		}
+
+		for (Segment segment : segments) {
+			for (int id : segment.ids) {
+				if (shared.contains(id)) {
+					overlapping.add(segment);
+					break;
+				}
+			}
+		}
+		return overlapping;
+	}
+
+	/**
+	 * Returns @param index merged with the indexes of @param overlapping
+	 *
+	 * @param overlapping - segments that share a location with the index
+	 * @param index       - immutable index to add
+	 * @return - merged index, or the index itself if nothing overlaps
+	 */
+	private static FrozenInvertedIndex merge(List<Segment> overlapping, FrozenInvertedIndex index) {
+		if (overlapping.isEmpty()) {
+			return index;
+		}
+
+		List<FrozenInvertedIndex> indexes = new ArrayList<>();
+		for (Segment segment : overlapping) {
+			indexes.add(segment.index);
+		}
+		indexes.add(index);
+		return FrozenInvertedIndex.merge(indexes);
+	}
+
+	/**
+	 * Flushes the words added with add() into a new segment, if there are any
+	 */
+	private void flush() {
+		if (!dirty) {
+			return;
+		}
+
+		{
+			lock.writeLock().lock();
+			try {
+				if (buffer.locationCount() > 0) {
+					addSegment(buffer.freeze());
+					buffer = new InvertedIndex();
+				}
+				dirty = false;
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+	}
+
+	/**
+	 * Flushes the buffered words and returns a copy of the list of segments
+	 *
+	 * @return - segments of the index
+	 */
+	private List<Segment> getSegments() {
+		flush();
+
+		{
+			lock.readLock().lock();
+			try {
+				return new ArrayList<>(segments);
+			} finally {
+				lock.readLock().unlock();
+			}
+		}
+	}
+
+	@Override
+	public void add(String word, String file, Integer position) {
+		{
+			lock.writeLock().lock();
+			try {
+				buffer.add(word, file, position);
+				dirty = true;
+				version++;
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+	}
+
+	@Override
+	public void addAll(InvertedIndex other) {
+		FrozenInvertedIndex segment = other.freeze();
+		if (segment.locationCount() == 0) {
+			return;
+		}
+
+		addSegment(segment);
+	}
+
+	@Override
+	public void seal() {
+		flush();
+	}
+
+	@Override
+	public FrozenInvertedIndex freeze() {
+		List<FrozenInvertedIndex> indexes = new ArrayList<>();
+		for (Segment segment : getSegments()) {
+			indexes.add(segment.index);
+		}
+		return indexes.size() == 1 ? indexes.get(0) : FrozenInvertedIndex.merge(indexes);
+	}
+
+	@Override
+	public void toIndexJSON(Path path) throws IOException {
+		freeze().toIndexJSON(path);
+	}
+
+	@Override
+	public void toLocationJSON(Path path) throws IOException {
+		freeze().toLocationJSON(path);
+	}
+
+	@Override
+	public int wordCount() {
+		return getWords().size();
+	}
+
+	@Override
+	public int wordCount(String word, String location) {
+		int count = 0;
+		for (Segment segment : getSegments()) {
+			count += segment.index.wordCount(word, location);
+		}
+		return count;
+	}
+
+	@Override
+	public int wordCount(String location) {
+		flush();
+
+		{
+			lock.readLock().lock();
+			try {
+				int id = locations.getId(location);
+				return id < 0 ? 0 : locations.getCount(id);
+			} finally {
+				lock.readLock().unlock();
+			}
+		}
+	}
+
+	@Override
+	public int locationCount(String word) {
+		return getLocations(word).size();
+	}
+
+	@Override
+	public int locationCount() {
+		flush();
+
+		{
+			lock.readLock().lock();
+			try {
+				return locations.size();
+			} finally {
+				lock.readLock().unlock();
+			}
+		}
+	}
+
+	@Override
+	public boolean containsWord(String word) {
+		for (Segment segment : getSegments()) {
+			if (segment.index.containsWord(word)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean containsLocation(String location) {
+		flush();
+
+		{
+			lock.readLock().lock();
+			try {
+				return locations.getId(location) >= 0;
+			} finally {
+				lock.readLock().unlock();
+			}
+		}
+	}
+
+	@Override
+	public boolean containsLocation(String word, String location) {
+		for (Segment segment : getSegments()) {
+			if (segment.index.containsLocation(word, location)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean containsPosition(String word, String location, Integer position) {
+		for (Segment segment : getSegments()) {
+			if (segment.index.containsPosition(word, location, position)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public Set<String> getWords() {
+		TreeSet<String> words = new TreeSet<>();
+		for (Segment segment : getSegments()) {
+			words.addAll(segment.index.getWords());
+		}
+		return Collections.unmodifiableSet(words);
+	}
+
+	@Override
+	public Set<String> getLocations(String word) {
+		TreeSet<String> files = new TreeSet<>();
+		for (Segment segment : getSegments()) {
+			files.addAll(segment.index.getLocations(word));
+		}
+		return Collections.unmodifiableSet(files);
+	}
+
+	@Override
+	public long version() {
+		return version;
+	}
+
+	/**
+	 * Adds up the matches of @param queries in every segment and returns the best
+	 * @param limit Results
+	 *
+	 * @param queries - Collection of Queries
+	 * @param exact   - True for exact matches, False for partial matches
+	 * @param limit   - maximum number of Results, or 0 for all of them
+	 * @return - sorted List of Results
+	 */
+	private List<Result> scatterSearch(Collection<String> queries, boolean exact, int limit) {
+		ScoreAccumulator accumulator = ScoreAccumulator.get();
+		try {
+			for (Segment segment : getSegments()) {
+				segment.index.accumulate(accumulator, queries, exact, segment.ids);
+			}
+
+			{
+				lock.readLock().lock();
+				try {
+					return accumulator.getResults(locations, limit);
+				} finally {
+					lock.readLock().unlock();
+				}
+			}
+		} finally {
+			accumulator.clear();
+		}
+	}
+
+	@Override
+	public List<Result> exactSearch(Collection<String> queries, int limit) {
+		return scatterSearch(queries, true, limit);
+	}
+
+	@Override
+	public List<Result> partialSearch(Collection<String> queries, int limit) {
+		return scatterSearch(queries, false, limit);
+	}
+
+	/**
+	 * Stops the merger thread. Segments that are being merged are finished, but
+	 * no new merges are started.
+	 */
+	public void shutdown() {
+		merger.shutdown();
+	}
+
+	/**
+	 * Returns the size tier of @param segment. Each tier holds segments up to
+	 * MERGE_FACTOR times larger than the tier below it.
+	 *
+	 * @param segment - segment of the index
+	 * @return - size tier
+	 */
+	private static int getTier(Segment segment) {
+		int tier = 0;
+		for (long size = segment.index.size(); size >= MERGE_FACTOR; size /= MERGE_FACTOR) {
+			tier++;
+		}
+		return tier;
+	}
+
+	/**
+	 * Returns the oldest MERGE_FACTOR segments of the first size tier that has
+	 * that many, or null if no tier does
+	 *
+	 * @return - segments to merge or null
+	 */
+	private List<Segment> findMerge() {
+		{
+			lock.readLock().lock();
+			try {
+				ArrayList<List<Segment>> tiers = new ArrayList<>();
+				for (Segment segment : segments) {
+					int tier = getTier(segment);
+					while (tiers.size() <= tier) {
+						tiers.add(new ArrayList<>());
+					}
+
+					List<Segment> group = tiers.get(tier);
+					group.add(segment);
+					if (group.size() == MERGE_FACTOR) {
+						return group;
+					}
+				}
+				return null;
+			} finally {
+				lock.readLock().unlock();
+			}
+		}
+	}
+
+	/**
+	 * Merges @param group into one segment and replaces them with it. The merge is
+	 * thrown away if any of the segments was merged by addSegment() in the
+	 * meantime.
+	 *
+	 * @param group - segments to merge
+	 */
+	private void merge(List<Segment> group) {
+		List<FrozenInvertedIndex> indexes = new ArrayList<>();
+		for (Segment segment : group) {
+			indexes.add(segment.index);
+		}
+
+		FrozenInvertedIndex merged = FrozenInvertedIndex.merge(indexes);
+		DocumentTable table = merged.getLocationTable();
+
+		{
+			lock.writeLock().lock();
+			try {
+				if (!segments.containsAll(group)) {
+					return;
+				}
+
+				int[] ids = new int[table.size()];
+				for (int id = 0; id < ids.length; id++) {
+					ids[id] = locations.getId(table.getLocation(id));
+				}
+
+				int index = segments.indexOf(group.get(0));
+				segments.removeAll(group);
+				segments.add(index, new Segment(merged, ids));
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+	}
+
+	/**
+	 * Waits in the background until segments are added, and then merges segments
+	 * of the same size tier until no tier has MERGE_FACTOR segments.
+	 */
+	private class Merger extends Thread {
+
+		/**
+		 * True if segments were added since the last check
+		 */
+		private boolean pending;
+
+		/**
+		 * Used to signal the merger should stop
+		 */
+		private boolean shutdown;
+
+		/**
+		 * Creates the merger as a daemon thread, so it never keeps the program
+		 * running
+		 */
+		private Merger() {
+			setDaemon(true);
+			pending = false;
+			shutdown = false;
+		}
+
+		/**
+		 * Signals that segments were added
+		 */
+		private synchronized void wake() {
+			pending = true;
+			notifyAll();
+		}
+
+		/**
+		 * Signals the merger to stop
+		 */
+		private synchronized void shutdown() {
+			shutdown = true;
+			notifyAll();
+		}
+
+		/**
+		 * Waits until segments were added or the merger is stopped
+		 *
+		 * @return - False if the merger should stop
+		 */
+		private synchronized boolean await() {
+			while (!pending && !shutdown) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					System.err.println("Warning: Merger interrupted.");
+					Thread.currentThread().interrupt();
+					return false;
+				}
+			}
+			pending = false;
+			return !shutdown;
+		}
+
+		/**
+		 * Returns True if the merger was asked to stop
+		 *
+		 * @return - True or False
+		 */
+		private synchronized boolean isShutdown() {
+			return shutdown;
+		}
+
+		@Override
+		public void run() {
+			while (await()) {
+				List<Segment> group;
+				while (!isShutdown() && (group = findMerge()) != null) {
+					merge(group);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,157 @@
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Extends ThreadSafeInvertedIndex and splits the words into shards by the hash
+ * of the word, so builders write to different shards independently. Searches
+ * scatter across the shards on a WorkQueue: each shard adds up its matches in
+ * its own ScoreAccumulator, and the counts are gathered into one accumulator
+ * before the Results are ranked.
+ *
+ * The thread that starts a search also searches shards itself until none are
+ * left, so a search started from a task on the same WorkQueue finishes even if
+ * every worker is busy.
+ *
+ * @author Porfirio Mohabir
+ *
+ */
+public class ShardedInvertedIndex extends ThreadSafeInvertedIndex {
+
+	/**
+	 * Work queue the shards are searched on
+	 */
+	private final WorkQueue queue;
+
+	/**
+	 * Creates an index with @param shards shards that are searched on @param queue
+	 *
+	 * @param shards - number of shards
+	 * @param queue  - WorkQueue used to search the shards
+	 */
+	public ShardedInvertedIndex(int shards, WorkQueue queue) {
+		super(shards);
+		this.queue = queue;
+	}
+
+	/**
+	 * Searches every shard in parallel and returns the best @param limit Results
+	 *
+	 * @param queries - Collection of Queries
+	 * @param exact   - True for exact matches, False for partial matches
+	 * @param limit   - maximum number of Results, or 0 for all of them
+	 * @return - sorted List of Results
+	 */
+	private List<Result> scatterSearch(Collection<String> queries, boolean exact, int limit) {
+		ScoreAccumulator accumulator = ScoreAccumulator.get();
+		try {
+			ShardSearch search = new ShardSearch(accumulator, queries, exact);
+
+			int helpers = Math.min(getStripeCount(), queue.size()) - 1;
+			for (int i = 0; i < helpers; i++) {
+				queue.execute(search);
+			}
+
+			search.run();
+			search.await();
+			return accumulator.getResults(getLocationTable(), limit);
+		} finally {
+			accumulator.clear();
+		}
+	}
+
+	@Override
+	public List<Result> exactSearch(Collection<String> queries, int limit) {
+		return scatterSearch(queries, true, limit);
+	}
+
+	@Override
+	public List<Result> partialSearch(Collection<String> queries, int limit) {
+		return scatterSearch(queries, false, limit);
+	}
+
+	/**
+	 * One search across every shard. Each thread that runs it takes the next
+	 * shard that nobody has started until there are none left.
+	 */
+	private class ShardSearch implements Runnable {
+
+		/**
+		 * Accumulator the counts of every shard are gathered into
+		 */
+		private final ScoreAccumulator accumulator;
+
+		/**
+		 * Collection of Queries
+		 */
+		private final Collection<String> queries;
+
+		/**
+		 * True for exact matches, False for partial matches
+		 */
+		private final boolean exact;
+
+		/**
+		 * Next shard to search
+		 */
+		private int next;
+
+		/**
+		 * Number of shards that are finished
+		 */
+		private int finished;
+
+		/**
+		 * Creates a search of every shard
+		 *
+		 * @param accumulator - accumulator the counts are gathered into
+		 * @param queries     - Collection of Queries
+		 * @param exact       - True for exact matches, False for partial matches
+		 */
+		private ShardSearch(ScoreAccumulator accumulator, Collection<String> queries, boolean exact) {
+			this.accumulator = accumulator;
+			this.queries = queries;
+			this.exact = exact;
+			this.next = 0;
+			this.finished = 0;
+		}
+
+		/**
+		 * Returns the next shard to search, or -1 if every shard was started
+		 *
+		 * @return - index of a shard or -1
+		 */
+		private synchronized int nextShard() {
+			return next < getStripeCount() ? next++ : -1;
+		}
+
+		/**
+		 * Waits until every shard is finished
+		 */
+		private synchronized void await() {
+			while (finished < getStripeCount()) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					System.out.println("Search not in wait");
+				}
+			}
+		}
+
+		@Override
+		public void run() {
+			int shard;
+			while ((shard = nextShard()) >= 0) {
+				ScoreAccumulator local = new ScoreAccumulator();
+				try {
+					accumulate(local, shard, queries, exact);
+				} finally {
+					synchronized (this) {
+						accumulator.addAll(local);
+						finished++;
+						notifyAll();
+					}
+				}
+			}
+		}
+	}
+}
@@ -1,3 +1,4 @@
+import java.lang.invoke.VarHandle;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 
@@ -6,6 +7,21 @@ import java.util.concurrent.locks.ReadWriteLock;
  * for writing. The read lock may be held simultaneously by multiple reader
  * threads, so long as there are no writers. The write lock is exclusive.
  *
+ * <p>
+ * Writers are preferred: once a writer is waiting, new readers wait behind it,
+ * so a steady stream of readers cannot starve writers. Both locks are
+ * reentrant. A thread that holds the read lock may lock it again even while a
+ * writer is waiting, and the thread that holds the write lock may lock either
+ * lock again. Trying to upgrade from the read lock to the write lock, or
+ * unlocking a lock the thread does not hold, throws an
+ * {@link IllegalMonitorStateException}.
+ *
+ * <p>
+ * Short lookups can skip the read lock with {@link #tryOptimisticRead()} and
+ * {@link #validate(long)}. The stamp changes every time the write lock is
+ * acquired or released, so a lookup whose stamp is still valid afterwards did
+ * not overlap with any write.
+ *
  * @see SimpleLock
  *
  * @see Lock
@@ -22,9 +38,24 @@ public class SimpleReadWriteLock {
 	/** The number of active readers. */
 	private int readers;
 
-	/** The number of active writers; */
+	/** The number of times the writer holds the write lock. */
 	private int writers;
 
+	/** The number of writers waiting for the write lock. */
+	private int waitingWriters;
+
+	/** The thread that holds the write lock, or null. */
+	private Thread writer;
+
+	/**
+	 * The number of times the current thread holds the read lock. Only the thread
+	 * itself changes its count, so it is read and written outside the monitor.
+	 */
+	private final ThreadLocal<int[]> readHolds;
+
+	/** Odd while the write lock is held, and increased on every write. */
+	private volatile long stamp;
+
 	/**
 	 * lock
 	 */
@@ -39,6 +70,10 @@ public class SimpleReadWriteLock {
 		this.lock = this;
 		readers = 0;
 		writers = 0;
+		waitingWriters = 0;
+		writer = null;
+		readHolds = ThreadLocal.withInitial(() -> new int[1]);
+		stamp = 0;
 	}
 
 	/**
@@ -59,28 +94,58 @@ public class SimpleReadWriteLock {
 		return writerLock;
 	}
 
+	/**
+	 * Returns a stamp for an optimistic read, or 0 if the write lock is held.
+	 *
+	 * @return a stamp to pass to {@link #validate(long)}, or 0
+	 */
+	public long tryOptimisticRead() {
+		long current = stamp;
+		return (current & 1) == 0 ? current + 2 : 0;
+	}
+
+	/**
+	 * Returns True if the write lock was not acquired since @param stamp was
+	 * returned by {@link #tryOptimisticRead()}. Any values read in between may
+	 * only be used if this returns True.
+	 *
+	 * @param stamp a stamp from {@link #tryOptimisticRead()}
+	 * @return True if no write overlapped with the optimistic read
+	 */
+	public boolean validate(long stamp) {
+		VarHandle.acquireFence();
+		return stamp != 0 && stamp == this.stamp + 2;
+	}
+
 	/**
 	 * Used to maintain simultaneous read operations.
 	 */
 	private class ReadLock implements SimpleLock {
 
 		/**
-		 * Will wait until there are no active writers in the system, and then will
-		 * increase the number of active readers.
+		 * Will wait until there are no active or waiting writers in the system, and
+		 * then will increase the number of active readers. A thread that already
+		 * holds the read or write lock does not wait.
 		 */
 		@Override
 		public void lock() {
 
+			int[] holds = readHolds.get();
+
 			synchronized (lock) {
-				while (writers > 0 || readers > 0) {
-					try {
-						lock.wait();
-					} catch (InterruptedException e) {
-						System.out.print("Queue not in wait");
+				if (holds[0] == 0 && writer != Thread.currentThread()) {
+					while (writer != null || waitingWriters > 0) {
+						try {
+							lock.wait();
+						} catch (InterruptedException e) {
+							System.out.print("Queue not in wait");
+						}
 					}
 				}
+
 				readers++;
 			}
+			holds[0]++;
 		}
 
 		/**
@@ -90,6 +155,12 @@ public class SimpleReadWriteLock {
 		@Override
 		public void unlock() {
 
+			int[] holds = readHolds.get();
+			if (holds[0] == 0) {
+				throw new IllegalMonitorStateException("Read lock is not held by this thread");
+			}
+			holds[0]--;
+
 			synchronized (lock) {
 				readers--;
 				if (readers == 0) {
@@ -111,14 +182,34 @@ public class SimpleReadWriteLock {
 		@Override
 		public void lock() {
 			synchronized (lock) {
-				while (writers > 0) {
-					try {
-						lock.wait();
-					} catch (InterruptedException e) {
-						System.out.print("Queue not in wait");
+				Thread current = Thread.currentThread();
+
+				if (writer == current) {
+					writers++;
+					return;
+				}
+
+				if (readHolds.get()[0] > 0) {
+					throw new IllegalMonitorStateException("Read lock cannot be upgraded to the write lock");
+				}
+
+				waitingWriters++;
+				try {
+					while (writer != null || readers > 0) {
+						try {
+							lock.wait();
+						} catch (InterruptedException e) {
+							System.out.print("Queue not in wait");
+						}
 					}
+				} finally {
+					waitingWriters--;
 				}
-				writers++;
+
+				writer = current;
+				writers = 1;
+				stamp++;
+				VarHandle.fullFence();
 			}
 		}
 
@@ -129,9 +220,17 @@ public class SimpleReadWriteLock {
 		@Override
 		public void unlock() {
 			synchronized (lock) {
+				if (writer != Thread.currentThread()) {
+					throw new IllegalMonitorStateException("Write lock is not held by this thread");
+				}
+
 				writers = writers - 1;
-				lock.notifyAll();
+				if (writers == 0) {
+					writer = null;
+					stamp++;
+					lock.notifyAll();
+				}
 			}
 		}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,286 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import opennlp.tools.stemmer.snowball.SnowballStemmer;
+
+/**
+ * Stems words with one SnowballStemmer per thread and remembers the stem of
+ * every word it has seen, since natural text repeats a small vocabulary. The
+ * stems are kept at two levels. Each thread has a small direct-mapped table
+ * that is looked up with the characters of the word, so a hit creates no
+ * String and takes no lock. Behind it is a map shared by all threads, which is
+ * bounded by a number of words. Once the map is full, new words are stemmed
+ * but no longer added, so it is only read from then on. The words that fill it
+ * first are mostly the common ones.
+ *
+ * @author Porfirio Mohabir
+ *
+ */
+public class StemCache {
+
+	/**
+	 * Default maximum number of words in the shared map
+	 */
+	public static final int DEFAULT_CAPACITY = 1 << 17;
+
+	/**
+	 * Number of words in the table of each thread, a power of two
+	 */
+	private static final int LOCAL_SIZE = 1 << 10;
+
+	/**
+	 * StemCache for English words shared by the whole program
+	 */
+	private static final StemCache SHARED = new StemCache(SnowballStemmer.ALGORITHM.ENGLISH, DEFAULT_CAPACITY);
+
+	/**
+	 * Algorithm of the stemmers
+	 */
+	private final SnowballStemmer.ALGORITHM algorithm;
+
+	/**
+	 * Maximum number of words in the shared map
+	 */
+	private final int capacity;
+
+	/**
+	 * Stem of each word, shared by all threads
+	 */
+	private final ConcurrentHashMap<String, String> stems;
+
+	/**
+	 * Stemmer and table of each thread
+	 */
+	private final ThreadLocal<Local> local;
+
+	/**
+	 * Number of words found in a table or in the shared map
+	 */
+	private final LongAdder hits;
+
+	/**
+	 * Number of words that had to be stemmed
+	 */
+	private final LongAdder misses;
+
+	/**
+	 * Creates a StemCache with @param algorithm that keeps at most @param
+	 * capacity words in its shared map
+	 *
+	 * @param algorithm - algorithm of the stemmers
+	 * @param capacity  - maximum number of words in the shared map
+	 */
+	public StemCache(SnowballStemmer.ALGORITHM algorithm, int capacity) {
+		this.algorithm = algorithm;
+		this.capacity = Math.max(capacity, 0);
+		this.stems = new ConcurrentHashMap<>();
+		this.local = ThreadLocal.withInitial(Local::new);
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+	}
+
+	/**
+	 * Returns the StemCache for English words shared by the whole program
+	 *
+	 * @return - shared StemCache
+	 */
+	public static StemCache get() {
+		return SHARED;
+	}
+
+	/**
+	 * Returns the stem of @param word
+	 *
+	 * @param word - cleaned, lowercase word
+	 * @return - stem of the word
+	 */
+	public String stem(String word) {
+		Local current = local.get();
+		return current.stem(current.copy(word), 0, word.length(), word);
+	}
+
+	/**
+	 * Returns the stem of the word in the first @param length characters of
+	 * @param chars
+	 *
+	 * @param chars  - buffer that starts with a cleaned, lowercase word
+	 * @param length - length of the word
+	 * @return - stem of the word
+	 */
+	public String stem(char[] chars, int length) {
+		return local.get().stem(chars, 0, length, null);
+	}
+
+	/**
+	 * Returns the stem of the @param length characters of @param chars that
+	 * start at @param offset
+	 *
+	 * @param chars  - buffer with a cleaned, lowercase word
+	 * @param offset - first character of the word
+	 * @param length - length of the word
+	 * @return - stem of the word
+	 */
+	public String stem(char[] chars, int offset, int length) {
+		return local.get().stem(chars, offset, length, null);
+	}
+
+	/**
+	 * Returns the number of words found in a table or in the shared map
+	 *
+	 * @return - number of hits
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Returns the number of words that had to be stemmed
+	 *
+	 * @return - number of misses
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Returns the fraction of words that did not have to be stemmed
+	 *
+	 * @return - hit rate between 0 and 1, or 0 if no word was stemmed
+	 */
+	public double getHitRate() {
+		long found = getHits();
+		long total = found + getMisses();
+		return total == 0 ? 0 : (double) found / total;
+	}
+
+	/**
+	 * Returns the number of words in the shared map
+	 *
+	 * @return - number of words
+	 */
+	public int size() {
+		return stems.size();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d words, %d hits, %d misses, %.1f%% hit rate", size(), getHits(), getMisses(),
+				getHitRate() * 100);
+	}
+
+	/**
+	 * Stemmer and direct-mapped table of one thread
+	 */
+	private class Local {
+
+		/**
+		 * Stemmer of the thread
+		 */
+		private final SnowballStemmer stemmer;
+
+		/**
+		 * Word in each slot, or null
+		 */
+		private final String[] words;
+
+		/**
+		 * Stem of the word in each slot
+		 */
+		private final String[] stemmed;
+
+		/**
+		 * Reused buffer for words that are passed as a String
+		 */
+		private char[] buffer;
+
+		/**
+		 * Creates the stemmer and an empty table
+		 */
+		private Local() {
+			this.stemmer = new SnowballStemmer(algorithm);
+			this.words = new String[LOCAL_SIZE];
+			this.stemmed = new String[LOCAL_SIZE];
+			this.buffer = new char[32];
+		}
+
+		/**
+		 * Copies @param word into the reused buffer
+		 *
+		 * @param word - word to copy
+		 * @return - buffer that starts with the word
+		 */
+		private char[] copy(String word) {
+			if (buffer.length < word.length()) {
+				buffer = new char[Math.max(word.length(), buffer.length * 2)];
+			}
+			word.getChars(0, word.length(), buffer, 0);
+			return buffer;
+		}
+
+		/**
+		 * Returns the stem of the @param length characters of @param chars that
+		 * start at @param offset
+		 *
+		 * @param chars  - buffer with the word
+		 * @param offset - first character of the word
+		 * @param length - length of the word
+		 * @param word   - the word as a String, or null to create it if needed
+		 * @return - stem of the word
+		 */
+		private String stem(char[] chars, int offset, int length, String word) {
+			int hash = 0;
+			for (int i = 0; i < length; i++) {
+				hash = 31 * hash + chars[offset + i];
+			}
+			int slot = (hash ^ (hash >>> 16)) & (LOCAL_SIZE - 1);
+
+			String cached = words[slot];
+			if (cached != null && matches(cached, chars, offset, length)) {
+				hits.increment();
+				return stemmed[slot];
+			}
+
+			if (word == null) {
+				word = new String(chars, offset, length);
+			}
+
+			String stem = stems.get(word);
+			if (stem != null) {
+				hits.increment();
+			} else {
+				misses.increment();
+				stem = stemmer.stem(word).toString();
+				if (stems.size() < capacity) {
+					stems.putIfAbsent(word, stem);
+				}
+			}
+
+			words[slot] = word;
+			stemmed[slot] = stem;
+			return stem;
+		}
+
+		/**
+		 * Returns True if @param word has the @param length characters of @param
+		 * chars that start at @param offset
+		 *
+		 * @param word   - cached word
+		 * @param chars  - buffer with a word
+		 * @param offset - first character of the word
+		 * @param length - length of the word
+		 * @return - True if the words are equal
+		 */
+		private boolean matches(String word, char[] chars, int offset, int length) {
+			if (word.length() != length) {
+				return false;
+			}
+
+			for (int i = 0; i < length; i++) {
+				if (word.charAt(i) != chars[offset + i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
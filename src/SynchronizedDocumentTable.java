@@ -0,0 +1,49 @@
+import java.util.TreeMap;
+
+/**
+ * Extends DocumentTable and overrides all public methods, so one table of
+ * location IDs and word counts can be shared by several InvertedIndex stripes
+ * that are changed from different threads. Each call holds the lock of the
+ * table only for the single lookup or update, so word counts are updated
+ * atomically.
+ *
+ * @author Porfirio Mohabir
+ *
+ */
+public class SynchronizedDocumentTable extends DocumentTable {
+
+	@Override
+	public synchronized int getId(String location) {
+		return super.getId(location);
+	}
+
+	@Override
+	public synchronized int add(String location) {
+		return super.add(location);
+	}
+
+	@Override
+	public synchronized String getLocation(int id) {
+		return super.getLocation(id);
+	}
+
+	@Override
+	public synchronized int getCount(int id) {
+		return super.getCount(id);
+	}
+
+	@Override
+	public synchronized void addCount(int id, int count) {
+		super.addCount(id, count);
+	}
+
+	@Override
+	public synchronized int size() {
+		return super.size();
+	}
+
+	@Override
+	public synchronized TreeMap<String, Integer> toMap() {
+		return super.toMap();
+	}
+}
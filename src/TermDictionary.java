@@ -0,0 +1,186 @@
+/**
+ * An immutable, sorted dictionary of words. The characters of every word are
+ * packed one after another into a single char array, in sorted order, with an
+ * array of offsets, so no String object is kept per word. Each word is
+ * identified by its index in sorted order.
+ *
+ * Since the words are sorted, all the words that start with a prefix are next
+ * to each other. Their range of indexes is found with two binary searches,
+ * which also gives the number of matching words before any of them are visited.
+ * Characters are compared the same way as String.compareTo, so the order is
+ * the same as a TreeMap of the words.
+ *
+ * @author Porfirio Mohabir
+ *
+ */
+public class TermDictionary {
+
+	/**
+	 * Characters of every word, in sorted order
+	 */
+	private final char[] chars;
+
+	/**
+	 * Start of each word in chars, with one extra entry at the end
+	 */
+	private final int[] starts;
+
+	/**
+	 * Creates a TermDictionary from @param words, which must be sorted and have
+	 * no duplicates
+	 *
+	 * @param words - sorted words
+	 */
+	public TermDictionary(String[] words) {
+		starts = new int[words.length + 1];
+
+		int length = 0;
+		for (int i = 0; i < words.length; i++) {
+			starts[i] = length;
+			length += words[i].length();
+		}
+		starts[words.length] = length;
+
+		chars = new char[length];
+		for (int i = 0; i < words.length; i++) {
+			words[i].getChars(0, words[i].length(), chars, starts[i]);
+		}
+	}
+
+	/**
+	 * Returns the number of words
+	 *
+	 * @return - number of words
+	 */
+	public int size() {
+		return starts.length - 1;
+	}
+
+	/**
+	 * Returns the word at @param index
+	 *
+	 * @param index - index of a word in sorted order
+	 * @return - the word
+	 */
+	public String get(int index) {
+		return new String(chars, starts[index], starts[index + 1] - starts[index]);
+	}
+
+	/**
+	 * Compares the word at @param index with @param key. If @param prefix is True,
+	 * a word that starts with the key is equal to it.
+	 *
+	 * @param index  - index of a word in sorted order
+	 * @param key    - word or prefix to compare with
+	 * @param prefix - True to compare only the first characters of the word
+	 * @return - negative, zero or positive like String.compareTo
+	 */
+	private int compare(int index, CharSequence key, boolean prefix) {
+		int start = starts[index];
+		int length = starts[index + 1] - start;
+		int keyLength = key.length();
+		int min = Math.min(length, keyLength);
+
+		for (int i = 0; i < min; i++) {
+			int difference = chars[start + i] - key.charAt(i);
+			if (difference != 0) {
+				return difference;
+			}
+		}
+
+		if (prefix && length >= keyLength) {
+			return 0;
+		}
+		return length - keyLength;
+	}
+
+	/**
+	 * Returns the index of @param word, or a negative number (-(insertion point)
+	 * - 1) if it does not exist
+	 *
+	 * @param word - word to find
+	 * @return - index of the word or a negative number
+	 */
+	public int find(CharSequence word) {
+		int low = 0;
+		int high = size() - 1;
+
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int compare = compare(middle, word, false);
+
+			if (compare < 0) {
+				low = middle + 1;
+			} else if (compare > 0) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -(low + 1);
+	}
+
+	/**
+	 * Returns the index of the first word that starts with @param prefix. If no
+	 * word does, this is where it would be inserted.
+	 *
+	 * @param prefix - prefix to find
+	 * @return - first index of the prefix range
+	 */
+	public int prefixStart(CharSequence prefix) {
+		int low = 0;
+		int high = size();
+
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (compare(middle, prefix, false) < 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the index after the last word that starts with @param prefix
+	 *
+	 * @param prefix - prefix to find
+	 * @return - end of the prefix range
+	 */
+	public int prefixEnd(CharSequence prefix) {
+		int low = 0;
+		int high = size();
+
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (compare(middle, prefix, true) <= 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the number of words that start with @param prefix
+	 *
+	 * @param prefix - prefix to find
+	 * @return - number of words
+	 */
+	public int prefixCount(CharSequence prefix) {
+		return prefixEnd(prefix) - prefixStart(prefix);
+	}
+
+	/**
+	 * Returns True if the word at @param index is equal to @param word
+	 *
+	 * @param index - index of a word in sorted order
+	 * @param word  - word to compare with
+	 * @return - True or False
+	 */
+	public boolean equals(int index, CharSequence word) {
+		return compare(index, word, false) == 0;
+	}
+}
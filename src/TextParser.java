@@ -42,16 +42,19 @@ public class TextParser {
 	}
 
 	/**
-	 * Cleans the text and then splits it by whitespace.
+	 * Cleans the text and then splits it by whitespace. The result is the same as
+	 * {@code split(clean(text))}, but the text is scanned once by the
+	 * {@link TextTokenizer} of the current thread instead.
 	 *
 	 * @param text the text to clean and split
 	 * @return an array of {@link String} objects
 	 *
 	 * @see #clean(String)
-	 * @see #parse(String)
+	 * @see #split(String)
+	 * @see TextTokenizer
 	 */
 	public static String[] parse(String text) {
-		return split(clean(text));
+		return TextTokenizer.get().parse(text);
 	}
 
 }
\ No newline at end of file
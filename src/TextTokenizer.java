@@ -0,0 +1,365 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Locale;
+
+/**
+ * Splits text into the same words as {@link TextParser#parse(String)} in a
+ * single pass over its characters, without regular expressions. Each word is
+ * built in a reusable char buffer and passed to a {@link Handler}, so no String
+ * is created for a line or a word unless the handler creates one.
+ *
+ * The text is read in runs between ASCII whitespace. A run of characters below
+ * U+0300 is folded one character at a time with a table, built when the class
+ * is loaded by running TextParser.clean on every such character. Below U+0300
+ * no character is a combining mark, so the decompositions of neighbouring
+ * characters are never reordered, and none of them lowercases differently in
+ * context. Any other run is normalized, cleaned and lowercased as a whole, the
+ * same way TextParser does. Runs do not need each other, since ASCII whitespace
+ * has no decomposition. The only exception is the final form of a capital
+ * sigma, which depends on word boundaries that are found over the whole text,
+ * so the rest of a line with a sigma is cleaned together with the line. So is
+ * every line if the default locale has its own lowercasing rules.
+ *
+ * TextParser strips the text with {@link String#strip()}, which keeps leading
+ * no-break spaces, before splitting it on all whitespace. A line that starts
+ * with one, after the removed characters, therefore starts with an empty word,
+ * and so does the output of this class.
+ *
+ * Warning: This class is not thread-safe. Each thread should use its own
+ * instance.
+ *
+ * @see TextParser
+ *
+ * @author Porfirio Mohabir
+ *
+ */
+public class TextTokenizer {
+
+	/**
+	 * TextTokenizer of each thread
+	 */
+	private static final ThreadLocal<TextTokenizer> LOCAL = ThreadLocal.withInitial(TextTokenizer::new);
+
+	/**
+	 * Characters below this are folded with the table
+	 */
+	private static final int TABLE_SIZE = 0x300;
+
+	/**
+	 * Cleaned, lowercase form of every character below TABLE_SIZE
+	 */
+	private static final char[][] FOLDED = new char[TABLE_SIZE][];
+
+	/**
+	 * True if the default locale lowercases without special rules, so the table
+	 * can be used
+	 */
+	private static final boolean TABLE;
+
+	static {
+		for (char c = 0; c < TABLE_SIZE; c++) {
+			FOLDED[c] = TextParser.clean(String.valueOf(c)).toCharArray();
+		}
+
+		String language = Locale.getDefault().getLanguage();
+		TABLE = !language.equals("tr") && !language.equals("az") && !language.equals("lt");
+	}
+
+	/**
+	 * Receives the words of the text
+	 */
+	public interface Handler {
+
+		/**
+		 * Receives the next word, which is only valid until this method returns
+		 *
+		 * @param chars  - buffer that starts with the word
+		 * @param length - length of the word
+		 */
+		public void token(char[] chars, int length);
+	}
+
+	/**
+	 * Characters of the current word
+	 */
+	private char[] word;
+
+	/**
+	 * Length of the current word
+	 */
+	private int length;
+
+	/**
+	 * True once a character other than leading whitespace was kept
+	 */
+	private boolean started;
+
+	/**
+	 * True if an empty word comes before the next word
+	 */
+	private boolean empty;
+
+	/**
+	 * Number of characters TextParser.clean keeps from the runs folded so far
+	 */
+	private int kept;
+
+	/**
+	 * Creates a tokenizer
+	 */
+	public TextTokenizer() {
+		this.word = new char[32];
+		this.length = 0;
+	}
+
+	/**
+	 * Returns the TextTokenizer of the current thread
+	 *
+	 * @return - TextTokenizer of the current thread
+	 */
+	public static TextTokenizer get() {
+		return LOCAL.get();
+	}
+
+	/**
+	 * Returns the words of @param text, like {@link TextParser#parse(String)}
+	 *
+	 * @param text - text to clean and split
+	 * @return - array of words
+	 */
+	public String[] parse(CharSequence text) {
+		ArrayList<String> words = new ArrayList<>();
+		tokenize(text, (chars, count) -> words.add(new String(chars, 0, count)));
+		return words.toArray(new String[0]);
+	}
+
+	/**
+	 * Passes the words of @param text to @param handler, in the same order as
+	 * {@link TextParser#parse(String)} returns them
+	 *
+	 * @param text    - text to clean and split
+	 * @param handler - receives the words
+	 */
+	public void tokenize(CharSequence text, Handler handler) {
+		length = 0;
+		started = false;
+		empty = false;
+		kept = 0;
+
+		int end = text.length();
+		int start = 0;
+		boolean checked = false;
+
+		while (start < end) {
+			if (isAsciiSpace(text.charAt(start))) {
+				emit(handler);
+				kept++;
+				start++;
+				continue;
+			}
+
+			int stop = start;
+			boolean simple = TABLE;
+			while (stop < end && !isAsciiSpace(text.charAt(stop))) {
+				simple &= text.charAt(stop) < TABLE_SIZE;
+				stop++;
+			}
+
+			if (simple) {
+				fold(text, start, stop, handler);
+			} else if (!checked && (!TABLE || hasSigma(text, start, end))) {
+				// everything before this run was folded, so it starts the cleaned line
+				split(TextParser.clean(text.toString()), kept, handler);
+				return;
+			} else {
+				checked = true;
+				split(TextParser.clean(text.subSequence(start, stop).toString()), 0, handler);
+			}
+			start = stop;
+		}
+
+		emit(handler);
+	}
+
+	/**
+	 * Passes the words of the ASCII text in @param bytes from @param start to
+	 * @param end to @param handler, like {@link #tokenize(CharSequence, Handler)}
+	 * but without viewing the bytes as characters. ASCII text has no no-break
+	 * spaces, so its words are the runs of letters between ASCII whitespace.
+	 *
+	 * @param bytes   - ASCII text
+	 * @param start   - first byte of the text
+	 * @param end     - end of the text
+	 * @param handler - receives the words
+	 * @return - False if nothing was passed, because the default locale does not
+	 *         lowercase ASCII letters the usual way
+	 */
+	boolean tokenize(ByteBuffer bytes, int start, int end, Handler handler) {
+		if (!TABLE) {
+			return false;
+		}
+
+		length = 0;
+		empty = false;
+		for (int i = start; i < end; i++) {
+			int c = bytes.get(i);
+
+			if (c >= 'a' && c <= 'z') {
+				append((char) c);
+			} else if (c >= 'A' && c <= 'Z') {
+				append((char) (c + ('a' - 'A')));
+			} else if (isAsciiSpace((char) c)) {
+				emit(handler);
+			}
+		}
+
+		emit(handler);
+		return true;
+	}
+
+	/**
+	 * Returns True if @param text contains a capital sigma between @param start
+	 * and @param end
+	 *
+	 * @param text  - text
+	 * @param start - first character to check
+	 * @param end   - end of the characters to check
+	 * @return - True if there is a capital sigma
+	 */
+	private static boolean hasSigma(CharSequence text, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (text.charAt(i) == '\u03A3') {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Folds the characters of @param text from @param start to @param end with
+	 * the table
+	 *
+	 * @param text    - text
+	 * @param start   - first character of the run
+	 * @param end     - end of the run
+	 * @param handler - receives the words
+	 */
+	private void fold(CharSequence text, int start, int end, Handler handler) {
+		for (int i = start; i < end; i++) {
+			char c = text.charAt(i);
+
+			if (c < 0x80) {
+				// ASCII letters are the only ASCII characters that are kept
+				if (c >= 'a' && c <= 'z') {
+					append(c);
+					kept++;
+				} else if (c >= 'A' && c <= 'Z') {
+					append((char) (c + ('a' - 'A')));
+					kept++;
+				}
+			} else if (isSpace(c)) {
+				space(c, handler);
+				kept++;
+			} else {
+				for (char folded : FOLDED[c]) {
+					append(folded);
+				}
+				kept += FOLDED[c].length;
+			}
+		}
+	}
+
+	/**
+	 * Splits @param cleaned, the output of TextParser.clean, into words from
+	 * @param from to its end
+	 *
+	 * @param cleaned - cleaned text
+	 * @param from    - first character to split
+	 * @param handler - receives the words
+	 */
+	private void split(String cleaned, int from, Handler handler) {
+		for (int i = from; i < cleaned.length(); i++) {
+			char c = cleaned.charAt(i);
+
+			if (isSpace(c)) {
+				space(c, handler);
+			} else {
+				append(c);
+			}
+		}
+		emit(handler);
+	}
+
+	/**
+	 * Ends the current word at the whitespace @param c, and remembers an empty
+	 * word if it is leading whitespace that String.strip() keeps
+	 *
+	 * @param c       - whitespace character
+	 * @param handler - receives the words
+	 */
+	private void space(char c, Handler handler) {
+		if (!started && !Character.isWhitespace(c)) {
+			started = true;
+			empty = true;
+		}
+		emit(handler);
+	}
+
+	/**
+	 * Adds @param c to the current word
+	 *
+	 * @param c - cleaned, lowercase character
+	 */
+	private void append(char c) {
+		if (length == word.length) {
+			char[] larger = new char[length * 2];
+			System.arraycopy(word, 0, larger, 0, length);
+			word = larger;
+		}
+		word[length++] = c;
+		started = true;
+	}
+
+	/**
+	 * Passes the current word to @param handler if it is not empty
+	 *
+	 * @param handler - receives the words
+	 */
+	private void emit(Handler handler) {
+		if (length == 0) {
+			return;
+		}
+
+		if (empty) {
+			empty = false;
+			handler.token(word, 0);
+		}
+
+		handler.token(word, length);
+		length = 0;
+	}
+
+	/**
+	 * Returns True if @param c is ASCII whitespace, as matched by \s
+	 *
+	 * @param c - character
+	 * @return - True for space, tab, line feed, vertical tab, form feed and
+	 *         carriage return
+	 */
+	private static boolean isAsciiSpace(char c) {
+		return c == ' ' || (c >= '\t' && c <= '\r');
+	}
+
+	/**
+	 * Returns True if @param c is whitespace, as matched by \p{Space} with
+	 * UNICODE_CHARACTER_CLASS
+	 *
+	 * @param c - character
+	 * @return - True if the character has the White_Space property
+	 */
+	static boolean isSpace(char c) {
+		int type = Character.getType(c);
+		return type == Character.SPACE_SEPARATOR || type == Character.LINE_SEPARATOR
+				|| type == Character.PARAGRAPH_SEPARATOR || (c >= '\t' && c <= '\r') || c == '\u0085';
+	}
+}
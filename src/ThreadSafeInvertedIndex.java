@@ -1,232 +1,525 @@
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * Extends InvertedIndex and overrides all public methods in Inverted Index
- * Class Creates a threaded safe InvertedIndex using synchronization
+ * Implements WritableInvertedIndex and creates a threaded safe InvertedIndex
+ * using synchronization. Words are split into stripes by the hash of the word,
+ * and each stripe is an InvertedIndex with its own lock, so threads that add or
+ * search different words do not wait for each other. All stripes share one
+ * SynchronizedDocumentTable, so location IDs and word counts are the same in
+ * every stripe. Each stripe also keeps its words in a small open-addressing
+ * table that is safe to read without the lock, so containsWord() and
+ * wordCount() first try an optimistic read of the table and only take the read
+ * lock if the stamp of the stripe shows that a write overlapped with them.
  *
  * @author Porfirio Mohabir
  *
  */
-public class ThreadSafeInvertedIndex extends InvertedIndex {
+public class ThreadSafeInvertedIndex implements WritableInvertedIndex {
 
 	/**
-	 * Lock Object
+	 * Default number of stripes
 	 */
-	private final SimpleReadWriteLock lock;
+	public static final int DEFAULT_STRIPES = 16;
 
 	/**
-	 * Constructor creates and assigns SimpleReadWriteLock Object to a new Instance
+	 * Stripes of the index
+	 */
+	private final InvertedIndex[] stripes;
+
+	/**
+	 * Lock of each stripe
+	 */
+	private final SimpleReadWriteLock[] locks;
+
+	/**
+	 * Location IDs and word counts shared by every stripe
+	 */
+	private final DocumentTable locations;
+
+	/**
+	 * Number of times the index was changed
+	 */
+	private final LongAdder version;
+
+	/**
+	 * Words of each stripe, for lookups without the lock
+	 */
+	private final WordTable[] words;
+
+	/**
+	 * Constructor creates the stripes and assigns a SimpleReadWriteLock Object to
+	 * each of them
 	 */
 	public ThreadSafeInvertedIndex() {
-		super();
-		lock = new SimpleReadWriteLock();
+		this(DEFAULT_STRIPES);
+	}
+
+	/**
+	 * Constructor creates @param count stripes and assigns a SimpleReadWriteLock
+	 * Object to each of them
+	 *
+	 * @param count - number of stripes
+	 */
+	public ThreadSafeInvertedIndex(int count) {
+		this(new SynchronizedDocumentTable(), Math.max(count, 1));
+	}
+
+	/**
+	 * Creates @param count stripes that share @param locations
+	 *
+	 * @param locations - DocumentTable shared by every stripe
+	 * @param count     - number of stripes
+	 */
+	private ThreadSafeInvertedIndex(DocumentTable locations, int count) {
+		this.locations = locations;
+		stripes = new InvertedIndex[count];
+		locks = new SimpleReadWriteLock[count];
+		words = new WordTable[count];
+		version = new LongAdder();
+
+		for (int i = 0; i < count; i++) {
+			stripes[i] = new InvertedIndex(locations);
+			locks[i] = new SimpleReadWriteLock();
+			words[i] = new WordTable();
+		}
+	}
+
+	/**
+	 * Returns the stripe of @param word
+	 *
+	 * @param word - Word in Inverted Data Structure
+	 * @return - index of the stripe
+	 */
+	private int getStripe(String word) {
+		return InvertedIndex.getStripe(word, stripes.length);
 	}
 
 	@Override
 	public void add(String word, String file, Integer position) {
+		int stripe = getStripe(word);
 		{
-			lock.writeLock().lock();
+			locks[stripe].writeLock().lock();
 			try {
-				super.add(word, file, position);
+				stripes[stripe].add(word, file, position);
+				words[stripe].add(word);
 			} finally {
-				lock.writeLock().unlock();
+				locks[stripe].writeLock().unlock();
 			}
 		}
+		version.increment();
 	}
 
+	/**
+	 * Adds All Data to InvertedIndex Data Structure. The positions are added to
+	 * every stripe before the word counts are added, so a search never counts a
+	 * location whose words are not there yet.
+	 *
+	 * @param other - InvertedIndex Data Structure
+	 */
 	@Override
-	public void toIndexJSON(Path path) throws IOException {
-		{
-			lock.readLock().lock();
+	public void addAll(InvertedIndex other) {
+		int[] ids = InvertedIndex.addLocations(locations, other);
+
+		List<List<String>> added = new ArrayList<>(stripes.length);
+		for (int stripe = 0; stripe < stripes.length; stripe++) {
+			added.add(new ArrayList<>());
+		}
+		for (String word : other.getWords()) {
+			added.get(getStripe(word)).add(word);
+		}
+
+		for (int stripe = 0; stripe < stripes.length; stripe++) {
+			locks[stripe].writeLock().lock();
 			try {
-				super.toIndexJSON(path);
+				stripes[stripe].addPostings(other, ids, stripe, stripes.length);
+				for (String word : added.get(stripe)) {
+					words[stripe].add(word);
+				}
 			} finally {
-				lock.readLock().unlock();
+				locks[stripe].writeLock().unlock();
 			}
 		}
+
+		InvertedIndex.addCounts(locations, other, ids);
+		version.increment();
 	}
 
 	@Override
-	public void toLocationJSON(Path path) throws IOException {
-		{
-			lock.readLock().lock();
+	public void seal() {
+		for (int stripe = 0; stripe < stripes.length; stripe++) {
+			locks[stripe].writeLock().lock();
 			try {
-				super.toLocationJSON(path);
+				stripes[stripe].seal();
 			} finally {
-				lock.readLock().unlock();
+				locks[stripe].writeLock().unlock();
 			}
 		}
 	}
 
 	@Override
-	public int wordCount() {
-		{
-			lock.readLock().lock();
+	public FrozenInvertedIndex freeze() {
+		List<FrozenInvertedIndex> frozen = new ArrayList<>(stripes.length);
+
+		for (int stripe = 0; stripe < stripes.length; stripe++) {
+			locks[stripe].readLock().lock();
 			try {
-				return super.wordCount();
+				frozen.add(stripes[stripe].freeze());
 			} finally {
-				lock.readLock().unlock();
+				locks[stripe].readLock().unlock();
 			}
 		}
+		return FrozenInvertedIndex.merge(frozen);
 	}
 
 	@Override
-	public int wordCount(String word, String location) {
-		{
-			lock.readLock().lock();
+	public void toIndexJSON(Path path) throws IOException {
+		freeze().toIndexJSON(path);
+	}
+
+	@Override
+	public void toLocationJSON(Path path) throws IOException {
+		PrettyJSONWriter.asObject(locations.toMap(), path);
+	}
+
+	@Override
+	public int wordCount() {
+		int count = 0;
+
+		for (int stripe = 0; stripe < stripes.length; stripe++) {
+			long stamp = locks[stripe].tryOptimisticRead();
+			int size = words[stripe].size();
+			if (locks[stripe].validate(stamp)) {
+				count += size;
+				continue;
+			}
+
+			locks[stripe].readLock().lock();
 			try {
-				return super.wordCount(word, location);
+				count += stripes[stripe].wordCount();
 			} finally {
-				lock.readLock().unlock();
+				locks[stripe].readLock().unlock();
 			}
 		}
+		return count;
 	}
 
 	@Override
-	public int wordCount(String location) {
+	public int wordCount(String word, String location) {
+		int stripe = getStripe(word);
 		{
-			lock.readLock().lock();
+			locks[stripe].readLock().lock();
 			try {
-				return super.wordCount(location);
+				return stripes[stripe].wordCount(word, location);
 			} finally {
-				lock.readLock().unlock();
+				locks[stripe].readLock().unlock();
 			}
 		}
 	}
 
+	@Override
+	public int wordCount(String location) {
+		int id = locations.getId(location);
+		return id < 0 ? 0 : locations.getCount(id);
+	}
+
 	@Override
 	public int locationCount(String word) {
+		int stripe = getStripe(word);
 		{
-			lock.readLock().lock();
+			locks[stripe].readLock().lock();
 			try {
-				return super.locationCount(word);
+				return stripes[stripe].locationCount(word);
 			} finally {
-				lock.readLock().unlock();
+				locks[stripe].readLock().unlock();
 			}
 		}
 	}
 
 	@Override
 	public int locationCount() {
-		{
-			lock.readLock().lock();
-			try {
-				return super.locationCount();
-			} finally {
-				lock.readLock().unlock();
-			}
-		}
+		return locations.size();
 	}
 
 	@Override
 	public boolean containsWord(String word) {
+		int stripe = getStripe(word);
+
+		long stamp = locks[stripe].tryOptimisticRead();
+		boolean found = words[stripe].contains(word);
+		if (locks[stripe].validate(stamp)) {
+			return found;
+		}
+
 		{
-			lock.readLock().lock();
+			locks[stripe].readLock().lock();
 			try {
-				return super.containsWord(word);
+				return stripes[stripe].containsWord(word);
 			} finally {
-				lock.readLock().unlock();
+				locks[stripe].readLock().unlock();
 			}
 		}
 	}
 
 	@Override
 	public boolean containsLocation(String location) {
-		{
-			lock.readLock().lock();
-			try {
-				return super.containsLocation(location);
-			} finally {
-				lock.readLock().unlock();
-			}
-		}
+		return locations.getId(location) >= 0;
 	}
 
 	@Override
 	public boolean containsLocation(String word, String location) {
+		int stripe = getStripe(word);
 		{
-			lock.readLock().lock();
+			locks[stripe].readLock().lock();
 			try {
-				return super.containsLocation(word, location);
+				return stripes[stripe].containsLocation(word, location);
 			} finally {
-				lock.readLock().unlock();
+				locks[stripe].readLock().unlock();
 			}
 		}
 	}
 
 	@Override
 	public boolean containsPosition(String word, String location, Integer position) {
+		int stripe = getStripe(word);
 		{
-			lock.readLock().lock();
+			locks[stripe].readLock().lock();
 			try {
-				return super.containsPosition(word, location, position);
+				return stripes[stripe].containsPosition(word, location, position);
 			} finally {
-				lock.readLock().unlock();
+				locks[stripe].readLock().unlock();
 			}
 		}
 	}
 
 	@Override
 	public Set<String> getWords() {
-		{
-			lock.readLock().lock();
+		TreeSet<String> words = new TreeSet<>();
+
+		for (int stripe = 0; stripe < stripes.length; stripe++) {
+			locks[stripe].readLock().lock();
 			try {
-				return super.getWords();
+				words.addAll(stripes[stripe].getWords());
 			} finally {
-				lock.readLock().unlock();
+				locks[stripe].readLock().unlock();
 			}
 		}
+		return Collections.unmodifiableSet(words);
 	}
 
 	@Override
 	public Set<String> getLocations(String word) {
+		int stripe = getStripe(word);
 		{
-			lock.readLock().lock();
+			locks[stripe].readLock().lock();
 			try {
-				return super.getLocations(word);
+				return stripes[stripe].getLocations(word);
 			} finally {
-				lock.readLock().unlock();
+				locks[stripe].readLock().unlock();
 			}
 		}
 	}
 
 	@Override
-	public List<Result> exactSearch(Collection<String> queries) {
+	public long version() {
+		return version.sum();
+	}
+
+	/**
+	 * Returns the number of stripes
+	 *
+	 * @return - number of stripes
+	 */
+	int getStripeCount() {
+		return stripes.length;
+	}
+
+	/**
+	 * Returns the location IDs and word counts shared by every stripe
+	 *
+	 * @return - DocumentTable of the index
+	 */
+	DocumentTable getLocationTable() {
+		return locations;
+	}
+
+	/**
+	 * Adds the matches of @param queries in @param stripe to the @param
+	 * accumulator. For exact matches only the queries that belong to the stripe
+	 * are looked up, and the stripe is not locked if there are none.
+	 *
+	 * @param accumulator - ScoreAccumulator of the current search
+	 * @param stripe      - index of the stripe
+	 * @param queries     - Collection of Queries
+	 * @param exact       - True for exact matches, False for partial matches
+	 */
+	void accumulate(ScoreAccumulator accumulator, int stripe, Collection<String> queries, boolean exact) {
+		List<String> matching = new ArrayList<>();
+		for (String query : queries) {
+			if (!exact || getStripe(query) == stripe) {
+				matching.add(query);
+			}
+		}
+
+		if (matching.isEmpty()) {
+			return;
+		}
+
 		{
-			lock.readLock().lock();
+			locks[stripe].readLock().lock();
 			try {
-				return super.exactSearch(queries);
+				for (String query : matching) {
+					stripes[stripe].accumulate(accumulator, query, exact);
+				}
 			} finally {
-				lock.readLock().unlock();
+				locks[stripe].readLock().unlock();
 			}
 		}
 	}
 
 	@Override
-	public List<Result> partialSearch(Collection<String> queries) {
-		{
-			lock.readLock().lock();
-			try {
-				return super.partialSearch(queries);
-			} finally {
-				lock.readLock().unlock();
+	public List<Result> exactSearch(Collection<String> queries, int limit) {
+		ScoreAccumulator accumulator = ScoreAccumulator.get();
+		try {
+			for (int stripe = 0; stripe < stripes.length; stripe++) {
+				accumulate(accumulator, stripe, queries, true);
 			}
+			return accumulator.getResults(getLocationTable(), limit);
+		} finally {
+			accumulator.clear();
 		}
 	}
 
 	@Override
-	public void addAll(InvertedIndex other) {
-		{
-			lock.writeLock().lock();
-			try {
-				super.addAll(other);
-			} finally {
-				lock.writeLock().unlock();
+	public List<Result> partialSearch(Collection<String> queries, int limit) {
+		ScoreAccumulator accumulator = ScoreAccumulator.get();
+		try {
+			for (int stripe = 0; stripe < stripes.length; stripe++) {
+				accumulate(accumulator, stripe, queries, false);
+			}
+			return accumulator.getResults(getLocationTable(), limit);
+		} finally {
+			accumulator.clear();
+		}
+	}
+
+	/**
+	 * Open-addressing set of the words of one stripe. It is only changed under
+	 * the write lock of the stripe, but may be read without it. Every slot holds
+	 * null or a whole String, and a lookup probes at most every slot of the array
+	 * it started with, so a lookup that overlaps with a write can only give a
+	 * wrong answer, which the stamp of the lock then rejects.
+	 */
+	private static class WordTable {
+
+		/**
+		 * Words by hash, a power of two long and at most half full
+		 */
+		private String[] slots;
+
+		/**
+		 * Number of words
+		 */
+		private int size;
+
+		/**
+		 * Creates an empty table
+		 */
+		private WordTable() {
+			this.slots = new String[16];
+			this.size = 0;
+		}
+
+		/**
+		 * Returns the number of words
+		 *
+		 * @return - number of words
+		 */
+		private int size() {
+			return size;
+		}
+
+		/**
+		 * Returns True if @param word is in the table
+		 *
+		 * @param word - Word in Inverted Data Structure
+		 * @return - True if the word is in the table
+		 */
+		private boolean contains(String word) {
+			String[] current = slots;
+			int mask = current.length - 1;
+			int slot = hash(word) & mask;
+
+			for (int probes = 0; probes < current.length; probes++) {
+				String found = current[slot];
+				if (found == null) {
+					return false;
+				}
+				if (found.equals(word)) {
+					return true;
+				}
+				slot = (slot + 1) & mask;
+			}
+			return false;
+		}
+
+		/**
+		 * Adds @param word to the table if it is not there yet. Only called under
+		 * the write lock.
+		 *
+		 * @param word - Word in Inverted Data Structure
+		 */
+		private void add(String word) {
+			if (contains(word)) {
+				return;
 			}
+
+			if (2 * (size + 1) > slots.length) {
+				String[] larger = new String[slots.length * 2];
+				for (String old : slots) {
+					if (old != null) {
+						insert(larger, old);
+					}
+				}
+				slots = larger;
+			}
+
+			insert(slots, word);
+			size++;
+		}
+
+		/**
+		 * Puts @param word in the first free slot of @param table
+		 *
+		 * @param table - slots of a table
+		 * @param word  - word that is not in the table
+		 */
+		private static void insert(String[] table, String word) {
+			int mask = table.length - 1;
+			int slot = hash(word) & mask;
+			while (table[slot] != null) {
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = word;
+		}
+
+		/**
+		 * Returns the hash of @param word with its bits mixed, since the stripe
+		 * of a word is also picked by its hash
+		 *
+		 * @param word - Word in Inverted Data Structure
+		 * @return - mixed hash
+		 */
+		private static int hash(String word) {
+			int hash = word.hashCode() * 0x9E3779B9;
+			return hash ^ (hash >>> 16);
 		}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,444 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits the lines of a UTF-8 text file into words straight from its bytes,
+ * without a Reader. Large files are memory-mapped, and small files are read
+ * into one buffer. Lines end at \n, \r or \r\n like
+ * {@link java.io.BufferedReader#readLine()}, and each line is passed to the
+ * {@link TextTokenizer} on its own, so the words and their order are the same
+ * as reading the file line by line.
+ *
+ * A line of ASCII bytes is split by the TextTokenizer straight from the
+ * bytes, so it is never decoded or copied. In any other line the ASCII bytes
+ * are copied into a char buffer as they are, and only the runs of other bytes
+ * are decoded. Malformed UTF-8 throws a {@link CharacterCodingException}, like
+ * the Reader does, but all of the bytes are checked before the first word is
+ * passed on, so the handler receives either every word or none of them.
+ *
+ * Warning: This class is not thread-safe. Each thread should use its own
+ * instance.
+ *
+ * @see TextTokenizer
+ *
+ * @author Porfirio Mohabir
+ *
+ */
+public class Utf8Tokenizer {
+
+	/**
+	 * Utf8Tokenizer of each thread
+	 */
+	private static final ThreadLocal<Utf8Tokenizer> LOCAL = ThreadLocal.withInitial(Utf8Tokenizer::new);
+
+	/**
+	 * Files smaller than this are read instead of mapped
+	 */
+	private static final long MAP_THRESHOLD = 64 * 1024;
+
+	/**
+	 * Maximum number of bytes mapped at once
+	 */
+	private static final long MAP_SIZE = 1L << 30;
+
+	/**
+	 * Decodes the runs of non-ASCII bytes
+	 */
+	private final CharsetDecoder decoder;
+
+	/**
+	 * View of a line of ASCII bytes
+	 */
+	private final AsciiLine ascii;
+
+	/**
+	 * Characters of a line with non-ASCII bytes
+	 */
+	private char[] chars;
+
+	/**
+	 * View of the characters
+	 */
+	private CharBuffer line;
+
+	/**
+	 * Creates a tokenizer
+	 */
+	public Utf8Tokenizer() {
+		this.decoder = StandardCharsets.UTF_8.newDecoder();
+		this.ascii = new AsciiLine();
+		this.chars = new char[256];
+		this.line = CharBuffer.wrap(chars);
+	}
+
+	/**
+	 * Returns the Utf8Tokenizer of the current thread
+	 *
+	 * @return - Utf8Tokenizer of the current thread
+	 */
+	public static Utf8Tokenizer get() {
+		return LOCAL.get();
+	}
+
+	/**
+	 * Passes the words of the text file at @param path to @param handler, in the
+	 * order of the file
+	 *
+	 * @param path    - path of a UTF-8 text file
+	 * @param handler - receives the words
+	 * @throws IOException if the file cannot be read or is not UTF-8
+	 */
+	public void tokenize(Path path, TextTokenizer.Handler handler) throws IOException {
+		tokenize(path, 0, Long.MAX_VALUE, handler);
+	}
+
+	/**
+	 * Passes the words of the lines of the text file at @param path from byte
+	 * @param start to byte @param end to @param handler, in the order of the file
+	 *
+	 * @param path    - path of a UTF-8 text file
+	 * @param start   - first byte of a line
+	 * @param end     - end of the bytes, at the end of a line or past the end of
+	 *                the file
+	 * @param handler - receives the words
+	 * @throws IOException if the file cannot be read or is not UTF-8, before any
+	 *                     word is passed on
+	 *
+	 * @see #lineStart(FileChannel, long)
+	 */
+	public void tokenize(Path path, long start, long end, TextTokenizer.Handler handler) throws IOException {
+		List<ByteBuffer> windows = new ArrayList<>();
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			end = Math.min(end, channel.size());
+
+			if (end - start < MAP_THRESHOLD) {
+				ByteBuffer bytes = ByteBuffer.allocate((int) Math.max(end - start, 0));
+				while (bytes.hasRemaining() && channel.read(bytes, start + bytes.position()) >= 0) {
+					// reads until the buffer is full or the file ends
+				}
+				windows.add(bytes.flip());
+			} else {
+				while (start < end) {
+					long length = Math.min(end - start, MAP_SIZE);
+					ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+
+					int stop = (int) length;
+					if (start + length < end) {
+						// the rest of the last line is mapped again with the next lines
+						stop = lastLineEnd(bytes, stop);
+						if (stop == 0) {
+							throw new IOException("Line is too long: " + path);
+						}
+					}
+
+					windows.add(bytes.limit(stop));
+					start += stop;
+				}
+			}
+		}
+
+		// mapped buffers stay valid after the channel is closed
+		for (ByteBuffer bytes : windows) {
+			validate(bytes, 0, bytes.limit());
+		}
+		for (ByteBuffer bytes : windows) {
+			tokenizeLines(bytes, 0, bytes.limit(), handler);
+		}
+	}
+
+	/**
+	 * Returns the first byte of the first line that starts at or after @param
+	 * position in the file of @param channel. A \r\n is never split.
+	 *
+	 * @param channel  - channel of a UTF-8 text file
+	 * @param position - byte in the file
+	 * @return - first byte of the line, or the size of the file if no line starts
+	 *         there
+	 * @throws IOException if the file cannot be read
+	 */
+	public static long lineStart(FileChannel channel, long position) throws IOException {
+		long size = channel.size();
+		if (position <= 0) {
+			return 0;
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(8192);
+		long offset = position - 1;
+		boolean carriage = false;
+
+		while (offset < size) {
+			buffer.clear();
+			int read = channel.read(buffer, offset);
+			if (read <= 0) {
+				break;
+			}
+
+			for (int i = 0; i < read; i++) {
+				byte b = buffer.get(i);
+				if (carriage) {
+					return b == '\n' ? offset + i + 1 : offset + i;
+				}
+				if (b == '\n') {
+					return offset + i + 1;
+				}
+				carriage = b == '\r';
+			}
+			offset += read;
+		}
+
+		return size;
+	}
+
+	/**
+	 * Passes the words of the lines in @param bytes from @param start to @param
+	 * end to @param handler
+	 *
+	 * @param bytes   - UTF-8 text
+	 * @param start   - first byte of a line
+	 * @param end     - end of the bytes, at the end of a line
+	 * @param handler - receives the words
+	 * @throws CharacterCodingException if the bytes are not UTF-8, before any
+	 *                                  word is passed on
+	 */
+	public void tokenize(ByteBuffer bytes, int start, int end, TextTokenizer.Handler handler)
+			throws CharacterCodingException {
+		validate(bytes, start, end);
+		tokenizeLines(bytes, start, end, handler);
+	}
+
+	/**
+	 * Throws a {@link CharacterCodingException} if the bytes of @param bytes from
+	 * @param start to @param end are not UTF-8. Like the decoder, overlong forms,
+	 * surrogates, code points past U+10FFFF and cut off sequences are malformed.
+	 *
+	 * @param bytes - text
+	 * @param start - first byte
+	 * @param end   - end of the bytes
+	 * @throws CharacterCodingException if the bytes are not UTF-8
+	 */
+	private static void validate(ByteBuffer bytes, int start, int end) throws CharacterCodingException {
+		int i = start;
+		while (i < end) {
+			int b = bytes.get(i);
+			if (b >= 0) {
+				i++;
+				continue;
+			}
+
+			b &= 0xFF;
+			int length;
+			int min = 0x80;
+			int max = 0xBF;
+			if (b >= 0xC2 && b <= 0xDF) {
+				length = 2;
+			} else if (b >= 0xE0 && b <= 0xEF) {
+				length = 3;
+				min = b == 0xE0 ? 0xA0 : min;
+				max = b == 0xED ? 0x9F : max;
+			} else if (b >= 0xF0 && b <= 0xF4) {
+				length = 4;
+				min = b == 0xF0 ? 0x90 : min;
+				max = b == 0xF4 ? 0x8F : max;
+			} else {
+				throw new MalformedInputException(1);
+			}
+
+			// only the second byte has tighter bounds for some lead bytes
+			for (int k = 1; k < length; k++) {
+				if (i + k >= end) {
+					throw new MalformedInputException(k);
+				}
+				int next = bytes.get(i + k) & 0xFF;
+				if (next < (k == 1 ? min : 0x80) || next > (k == 1 ? max : 0xBF)) {
+					throw new MalformedInputException(k);
+				}
+			}
+			i += length;
+		}
+	}
+
+	/**
+	 * Passes the words of the lines in @param bytes from @param start to @param
+	 * end to @param handler. The bytes were already validated.
+	 *
+	 * @param bytes   - UTF-8 text
+	 * @param start   - first byte of a line
+	 * @param end     - end of the bytes, at the end of a line
+	 * @param handler - receives the words
+	 * @throws CharacterCodingException if the bytes are not UTF-8
+	 */
+	private void tokenizeLines(ByteBuffer bytes, int start, int end, TextTokenizer.Handler handler)
+			throws CharacterCodingException {
+		TextTokenizer tokenizer = TextTokenizer.get();
+
+		int i = start;
+		while (i < end) {
+			int lineStart = i;
+			boolean simple = true;
+
+			byte b = 0;
+			while (i < end && (b = bytes.get(i)) != '\n' && b != '\r') {
+				simple &= b >= 0;
+				i++;
+			}
+
+			if (simple) {
+				if (!tokenizer.tokenize(bytes, lineStart, i, handler)) {
+					ascii.set(bytes, lineStart, i);
+					tokenizer.tokenize(ascii, handler);
+				}
+			} else {
+				tokenizer.tokenize(decode(bytes, lineStart, i), handler);
+			}
+
+			if (i < end) {
+				i++;
+				if (b == '\r' && i < end && bytes.get(i) == '\n') {
+					i++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the characters of the line in @param bytes from @param start to
+	 * @param end, copying the ASCII bytes and decoding the other runs
+	 *
+	 * @param bytes - UTF-8 text
+	 * @param start - first byte of the line
+	 * @param end   - end of the line
+	 * @return - characters of the line, valid until the next line
+	 * @throws CharacterCodingException if the bytes are not UTF-8
+	 */
+	private CharBuffer decode(ByteBuffer bytes, int start, int end) throws CharacterCodingException {
+		// UTF-8 never has more characters than bytes
+		if (chars.length < end - start) {
+			chars = new char[Math.max(end - start, chars.length * 2)];
+			line = CharBuffer.wrap(chars);
+		}
+
+		int length = 0;
+		int i = start;
+		while (i < end) {
+			byte b = bytes.get(i);
+			if (b >= 0) {
+				chars[length++] = (char) b;
+				i++;
+				continue;
+			}
+
+			int runEnd = i;
+			while (runEnd < end && bytes.get(runEnd) < 0) {
+				runEnd++;
+			}
+
+			ByteBuffer in = bytes.duplicate();
+			in.limit(runEnd).position(i);
+			line.clear().position(length);
+
+			decoder.reset();
+			CoderResult result = decoder.decode(in, line, true);
+			if (result.isError()) {
+				result.throwException();
+			}
+			result = decoder.flush(line);
+			if (result.isError()) {
+				result.throwException();
+			}
+
+			length = line.position();
+			i = runEnd;
+		}
+
+		line.clear().limit(length);
+		return line;
+	}
+
+	/**
+	 * Returns the end of the last line that ends before @param end in @param
+	 * bytes
+	 *
+	 * @param bytes - UTF-8 text
+	 * @param end   - end of the bytes
+	 * @return - index after the last line terminator, or 0 if there is none
+	 */
+	private static int lastLineEnd(ByteBuffer bytes, int end) {
+		for (int i = end - 1; i >= 0; i--) {
+			byte b = bytes.get(i);
+			if (b == '\n' || b == '\r') {
+				return i + 1;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * A line of ASCII bytes viewed as characters
+	 */
+	private static class AsciiLine implements CharSequence {
+
+		/**
+		 * Bytes of the text
+		 */
+		private ByteBuffer bytes;
+
+		/**
+		 * First byte of the line
+		 */
+		private int start;
+
+		/**
+		 * Length of the line
+		 */
+		private int length;
+
+		/**
+		 * Views the bytes from @param start to @param end of @param bytes
+		 *
+		 * @param bytes - ASCII text
+		 * @param start - first byte of the line
+		 * @param end   - end of the line
+		 */
+		private void set(ByteBuffer bytes, int start, int end) {
+			this.bytes = bytes;
+			this.start = start;
+			this.length = end - start;
+		}
+
+		@Override
+		public int length() {
+			return length;
+		}
+
+		@Override
+		public char charAt(int index) {
+			return (char) bytes.get(start + index);
+		}
+
+		@Override
+		public CharSequence subSequence(int from, int to) {
+			AsciiLine sub = new AsciiLine();
+			sub.set(bytes, start + from, start + to);
+			return sub;
+		}
+
+		@Override
+		public String toString() {
+			byte[] copy = new byte[length];
+			bytes.duplicate().position(start).get(copy);
+			return new String(copy, StandardCharsets.US_ASCII);
+		}
+	}
+}
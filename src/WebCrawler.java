@@ -1,13 +1,32 @@
+import java.io.CharArrayWriter;
 import java.io.IOException;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
-
-import opennlp.tools.stemmer.Stemmer;
-import opennlp.tools.stemmer.snowball.SnowballStemmer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 
 /**
- * Web Crawler class
+ * Web Crawler class. By default each page is fetched, parsed and stemmed by one
+ * task on the WorkQueue. If a number of connections is given, pages are fetched
+ * on a separate fetch executor instead, so workers do not wait on the network.
+ * The fetch executor starts a virtual thread for every fetch if the JVM
+ * supports them, or else uses one thread per connection, and a Semaphore limits
+ * the number of connections that are open at the same time.
+ *
+ * On the WorkQueue a page is never kept as a String. Its bytes are decoded,
+ * cleaned by an {@link HtmlScanner}, split into words and stemmed while they
+ * are read from the network, and only the postings of the page are kept until
+ * it is added to the index. The fetch executor only reads and decodes the HTML
+ * into a buffer, and releases the connection before the buffer is parsed and
+ * stemmed by a task on the WorkQueue.
+ *
+ * Links are deduplicated by a {@link CrawlFrontier} before a task is queued for
+ * them, and the frontier hands out the queued URLs one host at a time. If a
+ * {@link CrawlCheckpoint} is given, the crawl is written to it from time to
+ * time and can be resumed after it dies.
  *
  * @author Porfirio Mohabir
  *
@@ -21,22 +40,37 @@ public class WebCrawler {
 	/**
 	 * Inverted Index Instance
 	 */
-	private final ThreadSafeInvertedIndex index;
+	private final WritableInvertedIndex index;
+
+	/**
+	 * Visited and queued URLs
+	 */
+	private final CrawlFrontier frontier;
+
+	/**
+	 * Records the progress of the crawl, or null
+	 */
+	private final CrawlCheckpoint checkpoint;
+
+	/**
+	 * Maximum number of open connections, or 0 to fetch on the WorkQueue
+	 */
+	private final int connections;
 
 	/**
-	 * Visited URl Instance
+	 * Limits the number of open connections
 	 */
-	private List<URL> visited;
+	private final Semaphore permits;
 
 	/**
-	 * Count of visited URls Instance
+	 * Executor the pages are fetched on during a crawl, or null
 	 */
-	int count;
+	private volatile ExecutorService fetcher;
 
 	/**
-	 * Limit Instances
+	 * Number of tasks that are queued or running
 	 */
-	int limit;
+	private int pending;
 
 	/**
 	 * Constructor, initializes the index and threads
@@ -45,13 +79,68 @@ public class WebCrawler {
 	 * @param queue work queue initialized with num threads from driver
 	 * @param limit of urls to visit
 	 */
-	public WebCrawler(ThreadSafeInvertedIndex index, WorkQueue queue, int limit) {
+	public WebCrawler(WritableInvertedIndex index, WorkQueue queue, int limit) {
+		this(index, queue, limit, 0);
+	}
+
+	/**
+	 * Constructor, initializes the index and threads, and fetches pages with at
+	 * most @param connections open connections outside of the WorkQueue
+	 *
+	 * @param index       thread safe index to store url contents in
+	 * @param queue       work queue initialized with num threads from driver
+	 * @param limit       of urls to visit
+	 * @param connections maximum number of open connections, or 0 to fetch on the
+	 *                    work queue
+	 */
+	public WebCrawler(WritableInvertedIndex index, WorkQueue queue, int limit, int connections) {
+		this(index, queue, limit, connections, false);
+	}
+
+	/**
+	 * Constructor, initializes the index and threads, fetches pages with at most
+	 * @param connections open connections outside of the WorkQueue, and keeps the
+	 * visited URLs in a Bloom filter if @param bloom is True
+	 *
+	 * @param index       thread safe index to store url contents in
+	 * @param queue       work queue initialized with num threads from driver
+	 * @param limit       of urls to visit
+	 * @param connections maximum number of open connections, or 0 to fetch on the
+	 *                    work queue
+	 * @param bloom       True to keep the visited URLs in a Bloom filter
+	 *
+	 * @see CrawlFrontier
+	 */
+	public WebCrawler(WritableInvertedIndex index, WorkQueue queue, int limit, int connections, boolean bloom) {
+		this(index, queue, limit, connections, bloom, null);
+	}
 
+	/**
+	 * Constructor, initializes the index and threads, fetches pages with at most
+	 * @param connections open connections outside of the WorkQueue, keeps the
+	 * visited URLs in a Bloom filter if @param bloom is True, and records the
+	 * progress of the crawl in @param checkpoint if it is not null
+	 *
+	 * @param index       thread safe index to store url contents in
+	 * @param queue       work queue initialized with num threads from driver
+	 * @param limit       of urls to visit
+	 * @param connections maximum number of open connections, or 0 to fetch on the
+	 *                    work queue
+	 * @param bloom       True to keep the visited URLs in a Bloom filter
+	 * @param checkpoint  records the progress of the crawl, or null
+	 *
+	 * @see CrawlFrontier
+	 * @see CrawlCheckpoint
+	 */
+	public WebCrawler(WritableInvertedIndex index, WorkQueue queue, int limit, int connections, boolean bloom,
+			CrawlCheckpoint checkpoint) {
 		this.index = index;
 		this.queue = queue;
-		this.limit = limit;
-		this.visited = new ArrayList<>();
-		this.count = 0;
+		this.frontier = new CrawlFrontier(limit, bloom);
+		this.checkpoint = checkpoint;
+		this.connections = Math.max(connections, 0);
+		this.permits = new Semaphore(Math.max(connections, 1));
+		this.pending = 0;
 	}
 
 	/**
@@ -61,103 +150,384 @@ public class WebCrawler {
 	 *
 	 */
 	public void crawl(URL url) {
-		queue.execute(new CrawlerTask(url));
+		crawl(url, false);
+	}
+
+	/**
+	 * Resumes the crawl from the last checkpoint, or begins web crawling URL if
+	 * there is no checkpoint
+	 *
+	 * @param url - Seed URL for crawl
+	 *
+	 * @see CrawlCheckpoint#restore(CrawlFrontier, WritableInvertedIndex)
+	 */
+	public void resume(URL url) {
+		crawl(url, true);
+	}
+
+	/**
+	 * Begins web crawling URL, or resumes from the last checkpoint if @param
+	 * resume is True and there is one
+	 *
+	 * @param url    - Seed URL for crawl
+	 * @param resume - True to resume from the last checkpoint
+	 */
+	private void crawl(URL url, boolean resume) {
+		int restored = -1;
+		if (checkpoint != null) {
+			try {
+				if (resume) {
+					restored = checkpoint.restore(frontier, index);
+				}
+				checkpoint.start();
+			} catch (IOException e) {
+				System.out.println("Unable to Read or Write Crawl Checkpoint");
+			}
+		}
+
+		if (connections > 0) {
+			fetcher = newFetchExecutor(connections);
+		}
+
 		try {
-			queue.finish();
-		} catch (InterruptedException e) {
-			System.out.println("Work queue encountered an Interrupted Exception.");
+			if (restored < 0 && url != null) {
+				offer(url);
+			}
+			for (int i = 0; i < restored; i++) {
+				submit(new CrawlerTask());
+			}
+			finish();
+		} finally {
+			if (fetcher != null) {
+				fetcher.shutdown();
+				fetcher = null;
+			}
+
+			if (checkpoint != null) {
+				try {
+					checkpoint.stop();
+				} catch (IOException e) {
+					System.out.println("Unable to Write Crawl Checkpoint");
+				}
+			}
 		}
 	}
 
 	/**
-	 * Stems each word from the HTML text of URL and adds it to @param local
+	 * Offers @param link to the frontier, and queues a task if it was accepted
 	 *
-	 * @param url   that you are fetching
-	 * @param html  string content of the url
-	 * @param local - ThreadSafeInvertedIndex
-	 * @throws IOException
+	 * @param link - URL of a link
 	 */
-	private void stemHtml(URL url, String html, ThreadSafeInvertedIndex local) throws IOException {
-		int position = 1;
-		Stemmer stemmer = new SnowballStemmer(SnowballStemmer.ALGORITHM.ENGLISH);
-		String[] words = html.split(" ");
+	private void offer(URL link) {
+		URL clean = frontier.offer(link, checkpoint == null ? null : checkpoint::accepted);
+		if (clean != null) {
+			submit(new CrawlerTask());
+		}
+	}
 
-		for (String word : words) {
-			String[] parsed = TextParser.parse(word);
+	/**
+	 * Records that @param url is done, with the postings of @param page
+	 *
+	 * @param url  - cleaned URL
+	 * @param page - parsed page, or null if it could not be fetched
+	 */
+	private void done(URL url, Page page) {
+		if (checkpoint != null) {
+			checkpoint.done(url, page == null ? null : page.local);
+		}
+	}
 
-			for (String parsedString : parsed) {
-				parsedString = parsedString.toLowerCase();
-				parsedString = stemmer.stem(parsedString).toString();
-				if (!parsedString.isEmpty()) {
-					local.add(parsedString, url.toString(), position);
-					position++;
+	/**
+	 * Returns an executor that starts a virtual thread for every task if the JVM
+	 * supports them, or else a pool of @param threads daemon threads
+	 *
+	 * @param threads - number of threads if virtual threads are not supported
+	 * @return - ExecutorService for fetching pages
+	 */
+	private static ExecutorService newFetchExecutor(int threads) {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newFixedThreadPool(threads, r -> {
+				Thread thread = new Thread(r);
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	/**
+	 * Queues @param task on the WorkQueue
+	 *
+	 * @param task - task to run
+	 */
+	private void submit(Runnable task) {
+		incrementPending();
+		queue.execute(() -> {
+			try {
+				task.run();
+			} finally {
+				decrementPending();
+			}
+		});
+	}
+
+	/**
+	 * Fetches @param url on the fetch executor, and then queues its HTML to be
+	 * parsed and added to the index on the WorkQueue
+	 *
+	 * @param url - cleaned URL to fetch
+	 */
+	private void fetch(URL url) {
+		incrementPending();
+		fetcher.execute(() -> {
+			boolean queued = false;
+			try {
+				CharArrayWriter html = new CharArrayWriter();
+				boolean fetched;
+				permits.acquireUninterruptibly();
+				try {
+					fetched = HtmlFetcher.fetchHTML(url, 3, html);
+				} finally {
+					permits.release();
+				}
+				if (fetched) {
+					submit(() -> visit(url, html));
+					queued = true;
 				}
+			} catch (RuntimeException e) {
+				System.err.println("Warning: Fetch executor encountered an exception while running.");
+			} finally {
+				if (!queued) {
+					done(url, null);
+				}
+				decrementPending();
 			}
+		});
+	}
+
+	/**
+	 * Parses the page of @param url and adds it to the index, and then records
+	 * that the URL is done, even if it failed
+	 *
+	 * @param url  - cleaned URL of the page
+	 * @param html - HTML of the page, or null to fetch it while it is parsed
+	 */
+	private void visit(URL url, CharArrayWriter html) {
+		Page added = null;
+		try {
+			Page page = html == null ? parse(url) : parse(url, html);
+			if (page != null) {
+				add(page);
+				added = page;
+			}
+		} finally {
+			done(url, added);
 		}
 	}
 
 	/**
-	 * Crawls each URL to clean, stem content and store in index instance
+	 * Increase the pending tasks
 	 */
-	private class CrawlerTask implements Runnable {
+	private synchronized void incrementPending() {
+		pending++;
+	}
+
+	/**
+	 * Decrease the pending tasks
+	 */
+	private synchronized void decrementPending() {
+		pending--;
+
+		if (pending == 0) {
+			this.notifyAll();
+		}
+	}
+
+	/**
+	 * Waits until every queued page is fetched and added to the index
+	 */
+	private synchronized void finish() {
+		while (pending > 0) {
+			try {
+				this.wait();
+			} catch (InterruptedException e) {
+				System.out.println("Work queue encountered an Interrupted Exception.");
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Fetches @param url and parses it into a page while it is read
+	 *
+	 * @param url - cleaned URL of the page
+	 * @return - the page, or null if it could not be fetched or is not HTML
+	 */
+	private static Page parse(URL url) {
+		Page page = new Page(url);
+		HtmlScanner scanner = new HtmlScanner(page);
+
+		if (!HtmlFetcher.fetchHTML(url, 3, scanner)) {
+			return null;
+		}
+
+		scanner.close();
+		page.finish();
+		return page;
+	}
+
+	/**
+	 * Parses @param html, the fetched HTML of @param url, into a page
+	 *
+	 * @param url  - cleaned URL of the page
+	 * @param html - HTML of the page
+	 * @return - the page
+	 */
+	private static Page parse(URL url, CharArrayWriter html) {
+		Page page = new Page(url);
+		HtmlScanner scanner = new HtmlScanner(page);
+
+		try {
+			html.writeTo(scanner);
+		} catch (IOException e) {
+			// an HtmlScanner never throws
+		}
+
+		scanner.close();
+		page.finish();
+		return page;
+	}
+
+	/**
+	 * Adds the words of @param page to the index and queues the links it
+	 * contains
+	 *
+	 * @param page - parsed page
+	 */
+	private void add(Page page) {
+		page.local.seal();
+		index.addAll(page.local);
+
+		for (URL u : page.links) {
+			offer(u);
+		}
+	}
+
+	/**
+	 * Receives the text and links of one page from an {@link HtmlScanner}. The
+	 * text is split into words at whitespace, and each word is parsed and stemmed
+	 * like the words of a text file, as soon as it ends. Only the current word
+	 * and the postings of the page are kept.
+	 */
+	private static class Page implements HtmlScanner.Handler, TextTokenizer.Handler {
 		/**
-		 * URL Instance
+		 * URL of the page
 		 */
-		private URL url;
+		private final URL url;
 
 		/**
-		 * Local InvertedIndex Instance
+		 * Location of the words in the index
 		 */
-		private ThreadSafeInvertedIndex local;
+		private final String location;
+
+		/**
+		 * Postings of the page
+		 */
+		private final InvertedIndex local;
+
+		/**
+		 * Links of the page in the order they were found
+		 */
+		private final List<URL> links;
+
+		/**
+		 * Characters of the current word
+		 */
+		private final StringBuilder word;
+
+		/**
+		 * Position of the next stemmed word
+		 */
+		private int position;
 
 		/**
 		 * Constructor
 		 *
-		 * @param url to process
+		 * @param url - cleaned URL of the page
 		 */
-		private CrawlerTask(URL url) {
+		private Page(URL url) {
 			this.url = url;
-			local = new ThreadSafeInvertedIndex();
+			this.location = url.toString();
+			this.local = new InvertedIndex();
+			this.links = new ArrayList<>();
+			this.word = new StringBuilder();
+			this.position = 1;
 		}
 
-		/**
-		 * Cleans and stems the html text and then stores it into the index
-		 */
 		@Override
-		public void run() {
-
-			URL clean = HtmlCleaner.clean(url);
-
-			synchronized (visited) {
-				if (visited.contains(clean) || visited.size() >= limit) {
-					return;
-				} else {
-					visited.add(clean);
-				}
+		public void text(char c) {
+			// whitespace ends a word, since TextParser splits on it anyway
+			if (c == ' ' || (c >= '\t' && c <= '\r')) {
+				finish();
+			} else {
+				word.append(c);
 			}
+		}
 
-			String html = HtmlFetcher.fetchHTML(clean, 3);
-
-			HtmlCleaner htmlCleaner = new HtmlCleaner(clean, html);
+		@Override
+		public void link(String link) {
+			try {
+				links.add(new URL(url, link));
+			} catch (MalformedURLException e) {
+				System.out.println("URL is throwing an Exception");
+			}
+		}
 
-			List<URL> urlsList = htmlCleaner.urls;
+		/**
+		 * Stems the current word and adds it to the postings
+		 */
+		private void finish() {
+			if (word.length() == 0) {
+				return;
+			}
 
-			html = HtmlCleaner.stripHtml(htmlCleaner.text);
+			TextTokenizer.get().tokenize(word, this);
+			word.setLength(0);
+		}
 
-			try {
-				stemHtml(clean, html, local);
-			} catch (IOException e) {
-				System.out.println("Error: Proccess for Stem HTML is not executed");
+		@Override
+		public void token(char[] chars, int length) {
+			String stem = StemCache.get().stem(chars, length);
+			if (!stem.isEmpty()) {
+				local.add(stem, location, position);
+				position++;
 			}
+		}
+	}
 
-			index.addAll(local);
-
-			for (URL u : urlsList) {
-				synchronized (visited) {
-					queue.execute(new CrawlerTask(u));
-				}
+	/**
+	 * Crawls the next URL of the frontier. One task is queued for every URL the
+	 * frontier accepts, but the frontier decides which host goes next.
+	 */
+	private class CrawlerTask implements Runnable {
+		/**
+		 * Fetches the next URL, stems its html text and then stores it into the
+		 * index
+		 */
+		@Override
+		public void run() {
+			URL url = frontier.poll();
+			if (url == null) {
+				return;
 			}
 
+			if (fetcher != null) {
+				fetch(url);
+			} else {
+				visit(url, null);
+			}
 		}
 	}
-}
\ No newline at end of file
+}
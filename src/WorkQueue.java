@@ -1,4 +1,7 @@
 import java.util.LinkedList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A simple work queue implementation based on the IBM developerWorks article by
@@ -11,24 +14,23 @@ import java.util.LinkedList;
  */
 public class WorkQueue {
 	/**
-	 * Pool of worker threads that will wait in the background until work is
-	 * available.
+	 * Runs the work requests, either on a pool of worker threads sharing one
+	 * queue or on a work-stealing ForkJoinPool.
 	 */
-	private final PoolWorker[] workers;
-
-	/** Queue of pending work requests. */
-	private final LinkedList<Runnable> queue;
-
-	/** Used to signal the queue should be shutdown. */
-	private volatile boolean shutdown;
+	private final Engine engine;
 
 	/** The default number of threads to use when not specified. */
 	public static final int DEFAULT = 5;
 
+	/**
+	 * Number of worker threads
+	 */
+	private final int threads;
+
 	/**
 	 * Keep track of tasks
 	 */
-	private int pending;
+	private final AtomicInteger pending;
 
 	/**
 	 * Starts a work queue with the default number of threads.
@@ -46,17 +48,22 @@ public class WorkQueue {
 	 */
 
 	public WorkQueue(int threads) {
-		this.queue = new LinkedList<Runnable>();
-		this.workers = new PoolWorker[threads];
-
-		this.shutdown = false;
-		this.pending = 0;
+		this(threads, false);
+	}
 
-		// start the threads so they are waiting in the background
-		for (int i = 0; i < threads; i++) {
-			workers[i] = new PoolWorker();
-			workers[i].start();
-		}
+	/**
+	 * Starts a work queue with the specified number of threads, that runs work on
+	 * a ForkJoinPool if @param forkJoin is True. Every worker of a ForkJoinPool
+	 * has its own deque, and idle workers steal work from the others, so work
+	 * requests made by tasks do not contend on one shared queue.
+	 *
+	 * @param threads  number of worker threads; should be greater than 1
+	 * @param forkJoin True to use a ForkJoinPool
+	 */
+	public WorkQueue(int threads, boolean forkJoin) {
+		this.threads = threads;
+		this.pending = new AtomicInteger();
+		this.engine = forkJoin ? new ForkJoinEngine(threads) : new PoolEngine(threads);
 	}
 
 	/**
@@ -67,29 +74,37 @@ public class WorkQueue {
 	 */
 
 	public void execute(Runnable r) {
-		incrementPending();
-		synchronized (queue) {
-			queue.addLast(r);
-			queue.notifyAll();
-		}
+		pending.incrementAndGet();
+		engine.execute(() -> runTask(r));
 	}
 
 	/**
-	 * Increase the pending work
+	 * Runs @param r and then decreases the pending work
+	 *
+	 * @param r work request
 	 */
-	private synchronized void incrementPending() {
-		this.pending++;
+	private void runTask(Runnable r) {
+		try {
+			r.run();
+		} catch (RuntimeException ex) {
+			// catch runtime exceptions to avoid leaking threads
+			System.err.println("Warning: Work queue encountered an exception while running.");
+		} finally {
+			decrementPending();
+		}
 	}
 
 	/**
 	 * Decrease the pending work
 	 */
-	private synchronized void decrementPending() {
-		assert this.pending > 0;
-		this.pending--;
+	private void decrementPending() {
+		int remaining = pending.decrementAndGet();
+		assert remaining >= 0;
 
-		if (this.pending == 0) {
-			this.notifyAll();
+		if (remaining == 0) {
+			synchronized (this) {
+				this.notifyAll();
+			}
 		}
 	}
 
@@ -100,7 +115,7 @@ public class WorkQueue {
 	 */
 	public synchronized void finish() throws InterruptedException {
 
-		while (this.pending > 0) {
+		while (pending.get() > 0) {
 			this.wait();
 		}
 	}
@@ -111,11 +126,7 @@ public class WorkQueue {
 	 */
 
 	public void shutdown() {
-		// safe to do unsynchronized due to volatile keyword
-		shutdown = true;
-		synchronized (queue) {
-			queue.notifyAll();
-		}
+		engine.shutdown();
 	}
 
 	/**
@@ -125,50 +136,137 @@ public class WorkQueue {
 	 */
 
 	public int size() {
-		return workers.length;
+		return threads;
 	}
 
 	/**
-	 * Waits until work is available in the work queue. When work is found, will
-	 * remove the work from the queue and run it. If a shutdown is detected, will
-	 * exit instead of grabbing new work from the queue. These threads will continue
-	 * running in the background until a shutdown is requested.
+	 * Runs work requests on worker threads
 	 */
-	private class PoolWorker extends Thread {
+	private interface Engine extends Executor {
+
+		/**
+		 * Stops the worker threads once the work in progress is finished
+		 */
+		public void shutdown();
+	}
+
+	/**
+	 * Runs work requests on a pool of worker threads that share one queue.
+	 */
+	private static class PoolEngine implements Engine {
+		/**
+		 * Pool of worker threads that will wait in the background until work is
+		 * available.
+		 */
+		private final PoolWorker[] workers;
+
+		/** Queue of pending work requests. */
+		private final LinkedList<Runnable> queue;
+
+		/** Used to signal the queue should be shutdown. */
+		private volatile boolean shutdown;
+
+		/**
+		 * Starts the worker threads
+		 *
+		 * @param threads number of worker threads
+		 */
+		private PoolEngine(int threads) {
+			this.queue = new LinkedList<Runnable>();
+			this.workers = new PoolWorker[threads];
+
+			this.shutdown = false;
+
+			// start the threads so they are waiting in the background
+			for (int i = 0; i < threads; i++) {
+				workers[i] = new PoolWorker();
+				workers[i].start();
+			}
+		}
 
 		@Override
-		public void run() {
-			Runnable r = null;
-
-			while (true) {
-				synchronized (queue) {
-					while (queue.isEmpty() && !shutdown) {
-						try {
-							queue.wait();
-						} catch (InterruptedException ex) {
-							System.err.println("Warning: Work queue interrupted.");
-							Thread.currentThread().interrupt();
+		public void execute(Runnable r) {
+			synchronized (queue) {
+				queue.addLast(r);
+				queue.notify();
+			}
+		}
+
+		@Override
+		public void shutdown() {
+			// safe to do unsynchronized due to volatile keyword
+			shutdown = true;
+			synchronized (queue) {
+				queue.notifyAll();
+			}
+		}
+
+		/**
+		 * Waits until work is available in the work queue. When work is found, will
+		 * remove the work from the queue and run it. If a shutdown is detected, will
+		 * exit instead of grabbing new work from the queue. These threads will
+		 * continue running in the background until a shutdown is requested.
+		 */
+		private class PoolWorker extends Thread {
+
+			@Override
+			public void run() {
+				Runnable r = null;
+
+				while (true) {
+					synchronized (queue) {
+						while (queue.isEmpty() && !shutdown) {
+							try {
+								queue.wait();
+							} catch (InterruptedException ex) {
+								System.err.println("Warning: Work queue interrupted.");
+								Thread.currentThread().interrupt();
+							}
 						}
-					}
-					// exit while for one of two reasons:
-					// (a) queue has work, or (b) shutdown has been called
+						// exit while for one of two reasons:
+						// (a) queue has work, or (b) shutdown has been called
 
-					if (shutdown) {
-						break;
-					} else {
-						r = queue.removeFirst();
+						if (shutdown) {
+							break;
+						} else {
+							r = queue.removeFirst();
+						}
 					}
-				}
 
-				try {
 					r.run();
-				} catch (RuntimeException ex) {
-					// catch runtime exceptions to avoid leaking threads
-					System.err.println("Warning: Work queue encountered an exception while running.");
-				} finally {
-					decrementPending();
 				}
 			}
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Runs work requests on a ForkJoinPool in asynchronous mode, since the tasks
+	 * are never joined.
+	 */
+	private static class ForkJoinEngine implements Engine {
+
+		/**
+		 * The ForkJoinPool
+		 */
+		private final ForkJoinPool pool;
+
+		/**
+		 * Starts the ForkJoinPool
+		 *
+		 * @param threads number of worker threads
+		 */
+		private ForkJoinEngine(int threads) {
+			pool = new ForkJoinPool(threads, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+		}
+
+		@Override
+		public void execute(Runnable r) {
+			pool.execute(r);
+		}
+
+		@Override
+		public void shutdown() {
+			pool.shutdown();
+		}
+	}
+}
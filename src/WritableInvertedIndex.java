@@ -0,0 +1,42 @@
+/**
+ * An Interface that contains the functions that add words to an Inverted Index
+ * Data Structure. The index builders and the web crawler add words through this
+ * interface, so they can build a plain InvertedIndex or one of the thread-safe
+ * indexes that keep their words in their own structures.
+ *
+ * @author Porfirio Mohabir
+ *
+ */
+public interface WritableInvertedIndex extends InvertedIndexInterface {
+
+	/**
+	 * Adds word file and positions for Inverted Index Also adds the File and it's
+	 * word count
+	 *
+	 * @param word     - Word in Inverted Data Structure
+	 * @param file     - File containing the word
+	 * @param position - position of word in file
+	 */
+	public void add(String word, String file, Integer position);
+
+	/**
+	 * Adds All Data to InvertedIndex Data Structure
+	 *
+	 * @param other - InvertedIndex Data Structure
+	 */
+	public void addAll(InvertedIndex other);
+
+	/**
+	 * Stores the positions of the index in their most compact form. More words
+	 * can still be added afterwards.
+	 */
+	public void seal();
+
+	/**
+	 * Returns an immutable, read-optimized snapshot of the Inverted Index. Changes
+	 * made to this index afterwards are not seen by the snapshot.
+	 *
+	 * @return - FrozenInvertedIndex with the same words, locations and positions
+	 */
+	public FrozenInvertedIndex freeze();
+}